@@ -0,0 +1,111 @@
+package com.mencrypto.sat.util.crypto.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.mencrypto.sat.util.crypto.FielConverter;
+import com.mencrypto.sat.util.crypto.OutputFormat;
+
+/**
+ * Memoria asignada por conversión en el camino de lectura y descifrado desde archivos, que es el del lote.
+ * Se ejecuta con el perfilador gc de JMH y muestra los bytes asignados por operación
+ * ({@code gc.alloc.rate.norm}) de cada benchmark:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.mencrypto.sat.util.crypto.benchmarks.AllocationBenchmark
+ * </pre>
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class AllocationBenchmark {
+
+	private final FielConverter converter = FielConverter.getDefault();
+	private SyntheticFiel fiel;
+	private char[] password;
+	private Path dir;
+	private File keyFile;
+	private File cerFile;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		fiel = SyntheticFiel.generate("XEXX010101000", "12345678a".toCharArray(), 2048);
+		password = fiel.getPassword();
+		dir = Files.createTempDirectory("fiel-alloc");
+		cerFile = fiel.writeTo(dir).toFile();
+		keyFile = dir.resolve(fiel.getRfc() + ".key").toFile();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Benchmark
+	public PrivateKey loadPrivateKeyFile() throws Exception {
+		return converter.loadPrivateKey(keyFile, password);
+	}
+
+	@Benchmark
+	public X509Certificate loadCertificateFile() throws Exception {
+		return converter.loadCertificate(cerFile);
+	}
+
+	@Benchmark
+	public String writeKeyStoreP12() throws Exception {
+		return converter.writeKeyStore(keyFile, cerFile, password, null, OutputFormat.P12);
+	}
+
+	@Benchmark
+	public String writeKeyStoreJKS() throws Exception {
+		return converter.writeKeyStore(keyFile, cerFile, password, null, OutputFormat.JKS);
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.include(AllocationBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		System.out.println();
+		System.out.println("Bytes asignados por conversión:");
+		for (RunResult run : new Runner(options).run()) {
+			Result<?> allocated = run.getSecondaryResults().get("gc.alloc.rate.norm");
+			System.out.printf("%-22s %,12.0f B/op%n", run.getParams().getBenchmark().replaceAll(".*\\.", ""),
+					(allocated == null) ? Double.NaN : allocated.getScore());
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.mencrypto.sat.util.crypto.benchmarks;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mencrypto.sat.util.crypto.BatchSigner;
+import com.mencrypto.sat.util.crypto.FielConverter;
+
+/**
+ * Rendimiento de la firma por lote: una firma aislada y un lote de cadenas originales
+ * escrito en orden, reportado como firmas por segundo
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchSignerBenchmark {
+
+	private static final int BATCH = 1024;
+
+	@Param({ "0" })
+	public int threads;
+
+	private final FielConverter converter = FielConverter.getDefault();
+	private BatchSigner signer;
+	private List<byte[]> payloads;
+	private byte[] payload;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		SyntheticFiel fiel = SyntheticFiel.generate("XEXX010101000", "12345678a".toCharArray(), 2048);
+		PrivateKey privateKey = converter.loadPrivateKey(fiel.getKey(), fiel.getPassword());
+		signer = new BatchSigner(privateKey, threads);
+		payloads = new ArrayList<>(BATCH);
+		for (int i = 0; i < BATCH; i++) {
+			payloads.add(("||3.3|A|" + i + "|2024-01-01T00:00:00|01|00001000000504465028|1000.00|MXN|1160.00|I|PUE|06000|XEXX010101000||")
+					.getBytes(StandardCharsets.UTF_8));
+		}
+		payload = payloads.get(0);
+	}
+
+	@Benchmark
+	public String sign() throws Exception {
+		return signer.sign(payload);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public long signAll() throws Exception {
+		return signer.signAll(payloads.iterator(), OutputStream.nullOutputStream());
+	}
+}
@@ -0,0 +1,157 @@
+package com.mencrypto.sat.util.crypto.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mencrypto.sat.util.crypto.FielConverter;
+import com.mencrypto.sat.util.crypto.OutputFormat;
+
+/**
+ * Benchmarks de cada etapa de la conversión: descifrado de la llave PKCS#8, lectura del certificado,
+ * obtención del RFC, armado del KeyStore, escritura con KeyStore.store y la conversión completa
+ * en memoria y a disco, para PKCS12 con BouncyCastle y para JKS.
+ * Las subclases fijan el número de hilos.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class FielBenchmark {
+
+	/**
+	 * FIEL sintética compartida por todos los hilos
+	 */
+	@State(Scope.Benchmark)
+	public static class Fiel {
+		final FielConverter converter = FielConverter.getDefault();
+		SyntheticFiel fiel;
+		byte[] key;
+		byte[] cer;
+		char[] password;
+		PrivateKey privateKey;
+		X509Certificate cert;
+		Path dir;
+
+		@Setup(Level.Trial)
+		public void setup() throws Exception {
+			fiel = SyntheticFiel.generate("XEXX010101000", "12345678a".toCharArray(), 2048);
+			key = fiel.getKey();
+			cer = fiel.getCer();
+			password = fiel.getPassword();
+			privateKey = converter.loadPrivateKey(key, password);
+			cert = converter.loadCertificate(cer);
+			dir = Files.createTempDirectory("fiel-bench");
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Exception {
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+			}
+		}
+	}
+
+	/**
+	 * KeyStore ya armados por hilo para medir solo KeyStore.store, y directorio propio para la escritura a disco
+	 */
+	@State(Scope.Thread)
+	public static class Stores {
+		KeyStore p12;
+		KeyStore jks;
+		File keyFile;
+		File cerFile;
+
+		@Setup(Level.Trial)
+		public void setup(Fiel state) throws Exception {
+			p12 = state.converter.createKeyStore(state.privateKey, state.cert, state.password, OutputFormat.P12);
+			jks = state.converter.createKeyStore(state.privateKey, state.cert, state.password, OutputFormat.JKS);
+			Path dir = Files.createTempDirectory(state.dir, "t");
+			cerFile = state.fiel.writeTo(dir).toFile();
+			keyFile = dir.resolve(state.fiel.getRfc() + ".key").toFile();
+		}
+	}
+
+	@Benchmark
+	public PrivateKey loadPrivateKey(Fiel state) throws Exception {
+		return state.converter.loadPrivateKey(state.key, state.password);
+	}
+
+	@Benchmark
+	public X509Certificate loadCertificate(Fiel state) throws Exception {
+		return state.converter.loadCertificate(state.cer);
+	}
+
+	@Benchmark
+	public String getRFCFromCert(Fiel state) {
+		return state.converter.getRFC(state.cert);
+	}
+
+	@Benchmark
+	public KeyStore buildP12(Fiel state) throws Exception {
+		return state.converter.createKeyStore(state.privateKey, state.cert, state.password, OutputFormat.P12);
+	}
+
+	@Benchmark
+	public KeyStore buildJKS(Fiel state) throws Exception {
+		return state.converter.createKeyStore(state.privateKey, state.cert, state.password, OutputFormat.JKS);
+	}
+
+	@Benchmark
+	public byte[] storeP12(Fiel state, Stores stores) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+		stores.p12.store(out, state.password);
+		return out.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] storeJKS(Fiel state, Stores stores) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+		stores.jks.store(out, state.password);
+		return out.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] convertP12(Fiel state) throws Exception {
+		return state.converter.convert(state.key, state.cer, state.password, null, OutputFormat.P12);
+	}
+
+	@Benchmark
+	public byte[] convertJKS(Fiel state) throws Exception {
+		return state.converter.convert(state.key, state.cer, state.password, null, OutputFormat.JKS);
+	}
+
+	@Benchmark
+	public String createKSWithCertAndKeyP12(Fiel state, Stores stores) throws Exception {
+		return state.converter.writeKeyStore(stores.keyFile, stores.cerFile, state.password, null, OutputFormat.P12);
+	}
+
+	@Benchmark
+	public String createKSWithCertAndKeyJKS(Fiel state, Stores stores) throws Exception {
+		return state.converter.writeKeyStore(stores.keyFile, stores.cerFile, state.password, null, OutputFormat.JKS);
+	}
+}
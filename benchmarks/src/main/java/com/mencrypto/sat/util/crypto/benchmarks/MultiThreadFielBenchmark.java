@@ -0,0 +1,14 @@
+package com.mencrypto.sat.util.crypto.benchmarks;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Etapas de la conversión medidas con un hilo por núcleo para detectar contención
+ * en el proveedor, las fábricas compartidas o el disco
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+@Threads(Threads.MAX)
+public class MultiThreadFielBenchmark extends FielBenchmark {
+}
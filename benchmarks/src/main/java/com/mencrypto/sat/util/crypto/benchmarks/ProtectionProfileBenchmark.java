@@ -0,0 +1,81 @@
+package com.mencrypto.sat.util.crypto.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mencrypto.sat.util.crypto.FielConverter;
+import com.mencrypto.sat.util.crypto.ProtectionProfile;
+
+/**
+ * Costo de escribir y de abrir un PKCS12 con cada perfil de protección. La apertura se mide
+ * con el PKCS12 del JDK, que es el que usan los servicios por default, e incluye obtener la llave
+ * porque es lo que hace un servicio al arrancar.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProtectionProfileBenchmark {
+
+	@Param({ "default", "legacy", "modern", "fast" })
+	public String profile;
+
+	@Param({ "10000" })
+	public int iterations;
+
+	private final FielConverter converter = FielConverter.getDefault();
+	private ProtectionProfile protection;
+	private PrivateKey privateKey;
+	private X509Certificate cert;
+	private char[] password;
+	private String alias;
+	private byte[] stored;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		SyntheticFiel fiel = SyntheticFiel.generate("XEXX010101000", "12345678a".toCharArray(), 2048);
+		password = fiel.getPassword();
+		privateKey = converter.loadPrivateKey(fiel.getKey(), password);
+		cert = converter.loadCertificate(fiel.getCer());
+		alias = converter.getRFC(cert);
+		protection = ProtectionProfile.parse(profile, iterations);
+		stored = store();
+	}
+
+	@Benchmark
+	public byte[] store() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+		converter.storePkcs12(privateKey, cert, password, protection, out);
+		return out.toByteArray();
+	}
+
+	@Benchmark
+	public Key load() throws Exception {
+		KeyStore keyStore = KeyStore.getInstance("PKCS12");
+		keyStore.load(new ByteArrayInputStream(stored), password);
+		return keyStore.getKey(alias, password);
+	}
+}
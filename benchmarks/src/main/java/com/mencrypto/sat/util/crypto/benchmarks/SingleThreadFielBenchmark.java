@@ -0,0 +1,13 @@
+package com.mencrypto.sat.util.crypto.benchmarks;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Etapas de la conversión medidas con un solo hilo
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+@Threads(1)
+public class SingleThreadFielBenchmark extends FielBenchmark {
+}
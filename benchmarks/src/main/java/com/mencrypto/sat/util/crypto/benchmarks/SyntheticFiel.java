@@ -0,0 +1,112 @@
+package com.mencrypto.sat.util.crypto.benchmarks;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.X500NameBuilder;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.openssl.PKCS8Generator;
+import org.bouncycastle.openssl.jcajce.JcaPKCS8Generator;
+import org.bouncycastle.openssl.jcajce.JceOpenSSLPKCS8EncryptorBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.OutputEncryptor;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+/**
+ * Genera una FIEL sintética con la misma forma que las que emite el SAT para ejecutar
+ * los benchmarks sin conexión: llave RSA, certificado con el atributo 2.5.4.45
+ * (RFC / CURP) en el sujeto y llave PKCS#8 cifrada con PBES2 DES-EDE3-CBC
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class SyntheticFiel {
+
+	private final String rfc;
+	private final char[] password;
+	private final byte[] key;
+	private final byte[] cer;
+
+	private SyntheticFiel(String rfc, char[] password, byte[] key, byte[] cer) {
+		this.rfc = rfc;
+		this.password = password;
+		this.key = key;
+		this.cer = cer;
+	}
+
+	/**
+	 * Genera una FIEL autofirmada
+	 * @param rfc RFC de 13 caracteres que se coloca en el atributo 2.5.4.45
+	 * @param password contraseña con la que se cifra la llave
+	 * @param keySize tamaño de la llave RSA, el SAT emite llaves de 2048 bits
+	 * @return SyntheticFiel con el contenido de la llave y el certificado
+	 * @throws GeneralSecurityException si no se puede generar la llave
+	 * @throws IOException si no se puede codificar el resultado
+	 */
+	public static SyntheticFiel generate(String rfc, char[] password, int keySize) throws GeneralSecurityException, IOException {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(keySize, new SecureRandom());
+		KeyPair keyPair = generator.generateKeyPair();
+
+		X500Name subject = new X500NameBuilder(BCStyle.INSTANCE)
+				.addRDN(BCStyle.CN, "CONTRIBUYENTE SINTETICO")
+				.addRDN(BCStyle.O, "CONTRIBUYENTE SINTETICO")
+				.addRDN(BCStyle.C, "MX")
+				.addRDN(BCStyle.UNIQUE_IDENTIFIER, rfc + " / XEXX010101HNEXXXA4")
+				.addRDN(BCStyle.SERIALNUMBER, " / XEXX010101HNEXXXA4")
+				.build();
+		long now = System.currentTimeMillis();
+		try {
+			X509CertificateHolder certHolder = new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(now),
+					new Date(now - 86_400_000L), new Date(now + 4L * 365 * 86_400_000L), subject, keyPair.getPublic())
+					.build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate()));
+			OutputEncryptor encryptor = new JceOpenSSLPKCS8EncryptorBuilder(PKCS8Generator.DES3_CBC)
+					.setPRF(PKCS8Generator.PRF_HMACSHA1)
+					.setIterationCount(2048)
+					.setPassword(password)
+					.build();
+			byte[] key = new JcaPKCS8Generator(keyPair.getPrivate(), encryptor).generate().getContent();
+			return new SyntheticFiel(rfc, password.clone(), key, certHolder.getEncoded());
+		} catch (OperatorCreationException e) {
+			throw new GeneralSecurityException("No se pudo generar la FIEL sintética", e);
+		}
+	}
+
+	/**
+	 * Escribe la llave y el certificado en el directorio indicado con el RFC como nombre
+	 * @param dir directorio destino, se crea si no existe
+	 * @return Path del certificado escrito, la llave queda junto con extensión .key
+	 * @throws IOException si no se pueden escribir los archivos
+	 */
+	public Path writeTo(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		Files.write(dir.resolve(rfc + ".key"), key);
+		return Files.write(dir.resolve(rfc + ".cer"), cer);
+	}
+
+	public String getRfc() {
+		return rfc;
+	}
+
+	public char[] getPassword() {
+		return password.clone();
+	}
+
+	public byte[] getKey() {
+		return key.clone();
+	}
+
+	public byte[] getCer() {
+		return cer.clone();
+	}
+}
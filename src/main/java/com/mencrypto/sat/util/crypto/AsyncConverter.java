@@ -0,0 +1,197 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversión asíncrona que regresa un {@link CompletableFuture} con un {@link ConversionResult}.
+ * Las peticiones pasan por una cola acotada: solo se ejecutan {@code maxConcurrent} conversiones a la vez
+ * y pueden esperar {@code queueCapacity} más; cuando la cola está llena {@link #submit} bloquea al llamador
+ * y {@link #trySubmit} espera lo indicado y rechaza, así una ráfaga de peticiones no agota CPU ni memoria.
+ * <pre>
+ * try (AsyncConverter async = new AsyncConverter(4, 100)) {
+ *     async.submit(key, cer, password, newPassword, OutputFormat.P12, ProtectionProfile.bcDefault())
+ *         .thenAccept(result -&gt; ...);
+ * }
+ * </pre>
+ * Una conversión fallida no completa el futuro con excepción, regresa el resultado con su {@link FailureReason};
+ * el futuro solo falla con {@link RejectedExecutionException} si la petición no se admite.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class AsyncConverter implements AutoCloseable {
+
+	private final FielConverter converter;
+	private final Executor executor;
+	private final ExecutorService ownedExecutor;
+	private final int capacity;
+	private final Semaphore admitted;
+	private final Semaphore running;
+	private volatile boolean closed;
+
+	/**
+	 * Usa el convertidor por default y un hilo virtual por conversión si la JVM lo permite
+	 * @param maxConcurrent conversiones simultáneas, si es menor a 1 se usa el número de núcleos
+	 * @param queueCapacity peticiones que pueden esperar además de las que se ejecutan
+	 */
+	public AsyncConverter(int maxConcurrent, int queueCapacity) {
+		this(FielConverter.getDefault(), null, maxConcurrent, queueCapacity);
+	}
+
+	/**
+	 * @param converter motor de conversión, por ejemplo con un {@link KeyCache}
+	 * @param executor ejecutor de las conversiones o null para un hilo virtual por conversión si la JVM lo permite
+	 * @param maxConcurrent conversiones simultáneas, si es menor a 1 se usa el número de núcleos
+	 * @param queueCapacity peticiones que pueden esperar además de las que se ejecutan
+	 * @throws IllegalArgumentException si la capacidad de la cola es negativa
+	 */
+	public AsyncConverter(FielConverter converter, Executor executor, int maxConcurrent, int queueCapacity) {
+		if (queueCapacity < 0) {
+			throw new IllegalArgumentException("La capacidad de la cola no puede ser negativa");
+		}
+		int concurrent = (maxConcurrent < 1) ? Runtime.getRuntime().availableProcessors() : maxConcurrent;
+		this.converter = converter;
+		this.ownedExecutor = (executor == null) ? WorkerThreads.newPerTaskExecutor("fiel-async") : null;
+		this.executor = (executor == null) ? ownedExecutor : executor;
+		this.capacity = concurrent + queueCapacity;
+		this.admitted = new Semaphore(capacity);
+		this.running = new Semaphore(concurrent);
+	}
+
+	/**
+	 * Agrega la conversión a la cola, si está llena bloquea hasta que haya lugar.
+	 * Las contraseñas se copian, el llamador puede limpiarlas al regresar
+	 * @param keypkcs8 contenido de la llave o .key
+	 * @param certx509 contenido del certificado o .cer
+	 * @param oldPassword contraseña de la llave
+	 * @param newPassword contraseña del nuevo KeyStore, si es nula se usa oldPassword
+	 * @param format P12, JKS o PEM
+	 * @param profile perfil de protección del PKCS12
+	 * @return CompletableFuture con el resultado de la conversión
+	 * @throws InterruptedException si se interrumpe la espera de un lugar en la cola
+	 */
+	public CompletableFuture<ConversionResult> submit(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword,
+			OutputFormat format, ProtectionProfile profile) throws InterruptedException {
+		if (closed) {
+			return rejected("El convertidor está cerrado");
+		}
+		admitted.acquire();
+		return dispatch(keypkcs8, certx509, oldPassword, newPassword, format, profile);
+	}
+
+	/**
+	 * Agrega la conversión a la cola esperando como máximo el tiempo indicado por un lugar
+	 * @param keypkcs8 contenido de la llave o .key
+	 * @param certx509 contenido del certificado o .cer
+	 * @param oldPassword contraseña de la llave
+	 * @param newPassword contraseña del nuevo KeyStore, si es nula se usa oldPassword
+	 * @param format P12, JKS o PEM
+	 * @param profile perfil de protección del PKCS12
+	 * @param timeout tiempo máximo de espera, 0 para no esperar
+	 * @param unit unidad del tiempo de espera
+	 * @return CompletableFuture con el resultado, o fallido con {@link RejectedExecutionException} si la cola sigue llena
+	 * @throws InterruptedException si se interrumpe la espera de un lugar en la cola
+	 */
+	public CompletableFuture<ConversionResult> trySubmit(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword,
+			OutputFormat format, ProtectionProfile profile, long timeout, TimeUnit unit) throws InterruptedException {
+		if (closed) {
+			return rejected("El convertidor está cerrado");
+		}
+		if (!admitted.tryAcquire(timeout, unit)) {
+			return rejected("Cola de conversión llena, intente más tarde");
+		}
+		return dispatch(keypkcs8, certx509, oldPassword, newPassword, format, profile);
+	}
+
+	/**
+	 * Entrega la conversión ya admitida al ejecutor, el lugar de la cola se libera al terminar
+	 */
+	private CompletableFuture<ConversionResult> dispatch(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword,
+			OutputFormat format, ProtectionProfile profile) {
+		char[] password = oldPassword.clone();
+		char[] passwordFinal = (newPassword == null) ? null : newPassword.clone();
+		CompletableFuture<ConversionResult> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> run(future, keypkcs8, certx509, password, passwordFinal, format, profile));
+		} catch (RejectedExecutionException e) {
+			release(password, passwordFinal);
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private void run(CompletableFuture<ConversionResult> future, byte[] keypkcs8, byte[] certx509, char[] password,
+			char[] passwordFinal, OutputFormat format, ProtectionProfile profile) {
+		ConversionResult result = null;
+		Throwable interrupted = null;
+		try {
+			// Si el llamador canceló mientras esperaba en la cola no se convierte
+			if (!future.isDone()) {
+				running.acquire();
+				long start = System.nanoTime();
+				try {
+					byte[] output = converter.convert(keypkcs8, certx509, password, passwordFinal, format, profile);
+					result = ConversionResult.success(format, output, elapsed(start));
+				} catch (IOException | GeneralSecurityException | RuntimeException e) {
+					result = ConversionResult.failure(format, ConversionMetrics.failure(e), e, elapsed(start));
+				} finally {
+					running.release();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			interrupted = e;
+		} finally {
+			// Se libera el lugar antes de completar, así una etapa dependiente puede enviar otra conversión sin bloquearse
+			release(password, passwordFinal);
+		}
+		if (interrupted != null) {
+			future.completeExceptionally(interrupted);
+		} else if (result != null) {
+			future.complete(result);
+		}
+	}
+
+	private void release(char[] password, char[] passwordFinal) {
+		Arrays.fill(password, '\0');
+		if (passwordFinal != null) {
+			Arrays.fill(passwordFinal, '\0');
+		}
+		admitted.release();
+	}
+
+	private static CompletableFuture<ConversionResult> rejected(String message) {
+		return CompletableFuture.failedFuture(new RejectedExecutionException(message));
+	}
+
+	private static long elapsed(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * @return int conversiones en ejecución o esperando en la cola
+	 */
+	public int getPending() {
+		return capacity - admitted.availablePermits();
+	}
+
+	/**
+	 * Deja de admitir conversiones, las que ya se admitieron terminan normalmente.
+	 * Si el ejecutor es propio se detiene al terminar las pendientes
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convierte muchos pares de FIEL en paralelo usando un grupo acotado de hilos,
+ * el error en un par no detiene el lote y el resultado de cada par se escribe en un reporte CSV
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class BatchConverter {
+
+	private final int threads;
+	private final char[] defaultPassword;
+	private final char[] newPassword;
+	private final ProtectionProfile profile;
+	private final ChainValidator validator;
+
+	/**
+	 * Las contraseñas no se copian ni se limpian, el llamador las limpia cuando termina {@link #run(List, Path)}
+	 * @param threads número de hilos de trabajo, si es menor a 1 se usa el número de núcleos
+	 * @param defaultPassword contraseña de la llave que se usa cuando el par no indica una fuente
+	 * @param newPassword contraseña del KeyStore generado, si es nula se usa la de la llave
+	 * @param profile perfil de protección de los p12 generados
+	 * @param validator valida el certificado de cada par antes de convertirlo, si es nulo no se valida
+	 */
+	public BatchConverter(int threads, char[] defaultPassword, char[] newPassword, ProtectionProfile profile,
+			ChainValidator validator) {
+		this.threads = (threads < 1) ? Runtime.getRuntime().availableProcessors() : threads;
+		this.defaultPassword = defaultPassword;
+		this.newPassword = newPassword;
+		this.profile = profile;
+		this.validator = validator;
+	}
+
+	/**
+	 * Resultado de la conversión de un par
+	 */
+	public static final class PairResult {
+		private final FielPair pair;
+		private final boolean success;
+		private final String output;
+		private final long millis;
+		private final String message;
+
+		PairResult(FielPair pair, boolean success, String output, long millis, String message) {
+			this.pair = pair;
+			this.success = success;
+			this.output = output;
+			this.millis = millis;
+			this.message = message;
+		}
+
+		public FielPair getPair() {
+			return pair;
+		}
+
+		public boolean isSuccess() {
+			return success;
+		}
+
+		public String getOutput() {
+			return output;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+	}
+
+	/**
+	 * Convierte todos los pares y escribe el reporte
+	 * @param pairs pares a convertir
+	 * @param report ruta del reporte CSV, si es nula no se escribe
+	 * @return List con el resultado de cada par en el mismo orden de entrada
+	 * @throws IOException si no se puede escribir el reporte
+	 * @throws InterruptedException si se interrumpe la espera del lote
+	 */
+	public List<PairResult> run(List<FielPair> pairs, Path report) throws IOException, InterruptedException {
+		Map<FielPair, String> conflicts = new IdentityHashMap<>();
+		Map<Path, FielPair> outputs = new HashMap<>();
+		for (FielPair pair : pairs) {
+			String conflict = claimOutputs(pair, outputs);
+			if (conflict != null) {
+				conflicts.put(pair, conflict);
+			}
+		}
+		List<PairResult> results = ParallelRunner.run(pairs, threads, "fiel-batch",
+				pair -> conflicts.containsKey(pair) ? new PairResult(pair, false, null, 0, conflicts.get(pair)) : convert(pair),
+				(pair, error) -> new PairResult(pair, false, null, 0, String.valueOf(error)));
+		if (report != null) {
+			writeReport(results, report);
+		}
+		return results;
+	}
+
+	/**
+	 * Reserva las rutas que va a escribir el par, los pares que comparten un .cer o una llave generan la misma
+	 * salida y al convertirse en paralelo se sobrescribirían, solo se convierte el primero
+	 * @param pair par a reservar
+	 * @param outputs rutas reservadas por los pares anteriores
+	 * @return String mensaje del conflicto o null si las rutas quedaron reservadas para el par
+	 */
+	static String claimOutputs(FielPair pair, Map<Path, FielPair> outputs) {
+		if (pair.getError() != null || pair.getKey() == null || pair.getCer() == null) {
+			return null;
+		}
+		List<Path> paths = new ArrayList<>(2);
+		if (pair.getFormat() == OutputFormat.PEM) {
+			paths.add(Path.of(FielConverter.outputPath(pair.getKey(), ".pem")));
+			paths.add(Path.of(FielConverter.outputPath(pair.getCer(), "_CER.pem")));
+		} else {
+			paths.add(Path.of(FielConverter.outputPath(pair.getCer(), pair.getFormat().getExtension())));
+		}
+		for (Path path : paths) {
+			FielPair owner = outputs.get(path);
+			if (owner != null) {
+				return "La salida " + path + " ya la genera el par " + owner.getKey() + " con " + owner.getCer();
+			}
+		}
+		for (Path path : paths) {
+			outputs.put(path, pair);
+		}
+		return null;
+	}
+
+	/**
+	 * Convierte un par atrapando cualquier error para que no afecte al resto del lote, la llave se compara con
+	 * el certificado antes de escribir la salida
+	 */
+	PairResult convert(FielPair pair) {
+		long start = System.nanoTime();
+		char[] password = null;
+		try {
+			if (pair.getError() != null) {
+				return failure(pair, start, "Renglón inválido en el manifiesto: " + pair.getError());
+			}
+			if (pair.getKey() == null) {
+				return failure(pair, start, "No se encontró la llave .key del certificado");
+			}
+			if (pair.getCer() == null) {
+				return failure(pair, start, "No se encontró el certificado .cer de la llave");
+			}
+			password = pair.readPassword(defaultPassword);
+			if (password == null) {
+				return failure(pair, start, "No se indicó la contraseña de la llave");
+			}
+			if (validator != null) {
+				validator.validate(FielConverter.getDefault().loadCertificate(pair.getCer()));
+			}
+			FielConverter converter = FielConverter.getDefault();
+			String output;
+			if (pair.getFormat() == OutputFormat.PEM) {
+				// Los dos archivos PEM cuentan como una sola conversión en las métricas
+				ConversionMetrics.Timer timer = ConversionMetrics.start(ConversionMetrics.Stage.CONVERSION);
+				try {
+					output = String.join(";", converter.writePEM(pair.getKey(), pair.getCer(), password));
+					timer.stop();
+				} catch (Exception e) {
+					timer.finish(e);
+					throw e;
+				}
+			} else {
+				output = converter.writeKeyStore(pair.getKey(), pair.getCer(), password, newPassword, pair.getFormat(), profile);
+			}
+			return new PairResult(pair, true, output, elapsed(start), "");
+		} catch (Exception e) {
+			return failure(pair, start, ConversionMetrics.failure(e) + ": " + e.getMessage());
+		} finally {
+			if (password != null) {
+				Arrays.fill(password, '\0');
+			}
+		}
+	}
+
+	private static PairResult failure(FielPair pair, long start, String message) {
+		return new PairResult(pair, false, null, elapsed(start), message);
+	}
+
+	private static long elapsed(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * Escribe el reporte CSV con una línea por par
+	 */
+	static void writeReport(List<PairResult> results, Path report) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+			writer.write("key,cer,format,status,output,millis,message");
+			writer.newLine();
+			for (PairResult result : results) {
+				FielPair pair = result.getPair();
+				writer.write(String.join(",",
+						csv(pair.getKey() == null ? "" : pair.getKey().getPath()),
+						csv(pair.getCer() == null ? "" : pair.getCer().getPath()),
+						pair.getFormat().name(),
+						result.isSuccess() ? "OK" : "ERROR",
+						csv(result.getOutput() == null ? "" : result.getOutput()),
+						Long.toString(result.getMillis()),
+						csv(result.getMessage())));
+				writer.newLine();
+			}
+		}
+	}
+
+	static String csv(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
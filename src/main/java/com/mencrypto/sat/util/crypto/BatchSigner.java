@@ -0,0 +1,214 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Firma muchos mensajes pequeños (cadenas originales, digestiones de XML) con la llave de la FIEL.
+ * La llave se descifra una sola vez, cada hilo reutiliza su propia instancia de {@link Signature}
+ * y los mensajes se firman por bloques en un grupo de hilos; las firmas SHA256withRSA se escriben
+ * en base64, una por línea, en el mismo orden de entrada a través de un flujo con búfer.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class BatchSigner {
+
+	/** Algoritmo de firma que usa el SAT */
+	public static final String ALGORITHM = "SHA256withRSA";
+
+	/** Mensajes que firma cada tarea, reduce el costo de coordinar los hilos */
+	static final int CHUNK_SIZE = 64;
+
+	private final PrivateKey privateKey;
+	private final int threads;
+	private final ThreadLocal<Signature> signatures;
+
+	/**
+	 * @param privateKey llave de la FIEL ya descifrada
+	 * @param threads número de hilos de firma, si es menor a 1 se usa el número de núcleos
+	 */
+	public BatchSigner(PrivateKey privateKey, int threads) {
+		this.privateKey = privateKey;
+		this.threads = (threads < 1) ? Runtime.getRuntime().availableProcessors() : threads;
+		this.signatures = ThreadLocal.withInitial(this::newSignature);
+	}
+
+	/**
+	 * Descifra la llave de la FIEL y crea el firmador
+	 * @param keypkcs8 File de la ubicación de la llave o .key
+	 * @param password contraseña de la llave
+	 * @param threads número de hilos de firma, si es menor a 1 se usa el número de núcleos
+	 * @return BatchSigner listo para firmar
+	 * @throws IOException si no se puede leer la llave
+	 * @throws GeneralSecurityException si la contraseña no corresponde o la llave no es válida
+	 */
+	public static BatchSigner load(File keypkcs8, char[] password, int threads) throws IOException, GeneralSecurityException {
+		return new BatchSigner(FielConverter.getDefault().loadPrivateKey(keypkcs8, password), threads);
+	}
+
+	private Signature newSignature() {
+		try {
+			Signature signature = Signature.getInstance(ALGORITHM);
+			signature.initSign(privateKey);
+			return signature;
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("No se pudo inicializar la firma " + ALGORITHM, e);
+		}
+	}
+
+	/**
+	 * Firma un solo mensaje en el hilo actual
+	 * @param payload mensaje a firmar
+	 * @return String firma en base64
+	 * @throws GeneralSecurityException si no se puede firmar
+	 */
+	public String sign(byte[] payload) throws GeneralSecurityException {
+		Signature signature = signatures.get();
+		signature.update(payload);
+		return Base64.getEncoder().encodeToString(signature.sign());
+	}
+
+	/**
+	 * Firma todos los mensajes y escribe una firma en base64 por línea en el orden de entrada.
+	 * Solo se mantienen en memoria unos cuantos bloques a la vez, así el iterador puede ser
+	 * tan grande como se requiera
+	 * @param payloads mensajes a firmar
+	 * @param out flujo destino, no se cierra
+	 * @return long número de mensajes firmados
+	 * @throws IOException si no se puede escribir o leer algún mensaje
+	 * @throws GeneralSecurityException si no se puede firmar
+	 * @throws InterruptedException si se interrumpe la espera de las firmas
+	 */
+	public long signAll(Iterator<byte[]> payloads, OutputStream out)
+			throws IOException, GeneralSecurityException, InterruptedException {
+		ExecutorService pool = WorkerThreads.newFixedExecutor(threads, "fiel-sign");
+		ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+		int maxPending = threads * 4;
+		long count = 0;
+		OutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+		try {
+			while (payloads.hasNext()) {
+				List<byte[]> chunk = new ArrayList<>(CHUNK_SIZE);
+				while (chunk.size() < CHUNK_SIZE && payloads.hasNext()) {
+					chunk.add(payloads.next());
+				}
+				count += chunk.size();
+				pending.add(pool.submit(() -> signChunk(chunk)));
+				if (pending.size() >= maxPending) {
+					buffered.write(result(pending.poll()));
+				}
+			}
+			while (!pending.isEmpty()) {
+				buffered.write(result(pending.poll()));
+			}
+			buffered.flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdownNow();
+		}
+		return count;
+	}
+
+	/**
+	 * Firma un bloque y regresa sus líneas ya codificadas en US-ASCII
+	 */
+	private byte[] signChunk(List<byte[]> chunk) throws GeneralSecurityException {
+		Signature signature = signatures.get();
+		Base64.Encoder encoder = Base64.getEncoder();
+		ByteArrayOutputStream lines = new ByteArrayOutputStream(chunk.size() * 350);
+		byte[] encoded = null;
+		for (byte[] payload : chunk) {
+			signature.update(payload);
+			byte[] raw = signature.sign();
+			int length = 4 * ((raw.length + 2) / 3);
+			if (encoded == null || encoded.length != length) {
+				encoded = new byte[length];
+			}
+			encoder.encode(raw, encoded);
+			lines.write(encoded, 0, length);
+			lines.write('\n');
+		}
+		return lines.toByteArray();
+	}
+
+	private static byte[] result(Future<byte[]> future) throws GeneralSecurityException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof GeneralSecurityException) {
+				throw (GeneralSecurityException) cause;
+			}
+			throw new GeneralSecurityException("No se pudo firmar el bloque", cause);
+		}
+	}
+
+	/**
+	 * Cada línea del lector es un mensaje en UTF-8, sin el salto de línea
+	 * @param reader lector de las líneas, por ejemplo la entrada estándar
+	 * @return Iterator que lee las líneas conforme se piden
+	 */
+	public static Iterator<byte[]> lines(BufferedReader reader) {
+		Iterator<String> lines = reader.lines().iterator();
+		return new Iterator<byte[]>() {
+			@Override
+			public boolean hasNext() {
+				return lines.hasNext();
+			}
+
+			@Override
+			public byte[] next() {
+				return lines.next().getBytes(StandardCharsets.UTF_8);
+			}
+		};
+	}
+
+	/**
+	 * Cada archivo es un mensaje completo
+	 * @param files archivos en el orden en que se firman
+	 * @return Iterator que lee cada archivo conforme se pide
+	 */
+	public static Iterator<byte[]> files(List<Path> files) {
+		Iterator<Path> paths = files.iterator();
+		return new Iterator<byte[]>() {
+			@Override
+			public boolean hasNext() {
+				return paths.hasNext();
+			}
+
+			@Override
+			public byte[] next() {
+				if (!paths.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				try {
+					return Files.readAllBytes(paths.next());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+	}
+}
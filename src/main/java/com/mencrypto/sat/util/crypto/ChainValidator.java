@@ -0,0 +1,278 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.CRL;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertPathValidatorException.BasicReason;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateExpiredException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateNotYetValidException;
+import java.security.cert.PKIXReason;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Valida sin conexión que un certificado esté vigente y que lo haya emitido una de las CA
+ * del SAT de un directorio local, y opcionalmente que no esté en las CRL locales.
+ * La ruta de cada CA hasta su raíz se valida una sola vez y se guarda en caché, así validar
+ * miles de certificados de las mismas CA cuesta una verificación de firma por certificado.
+ * Es seguro para usarse desde varios hilos.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class ChainValidator {
+
+	private static final int MAX_PATH_LENGTH = 8;
+
+	/**
+	 * Resultado de validar la ruta de una CA, vale desde que inicia la vigencia del último certificado
+	 * de la ruta hasta que vence el primero
+	 */
+	private static final class CaPath {
+		final boolean trusted;
+		final long validFrom;
+		final long validUntil;
+		final String reason;
+
+		CaPath(boolean trusted, long validFrom, long validUntil, String reason) {
+			this.trusted = trusted;
+			this.validFrom = validFrom;
+			this.validUntil = validUntil;
+			this.reason = reason;
+		}
+
+		boolean appliesAt(long at) {
+			return validFrom <= at && at <= validUntil;
+		}
+	}
+
+	private final Map<X500Principal, List<X509Certificate>> authorities;
+	private final Map<X500Principal, List<X509CRL>> crls;
+	private final Map<X509Certificate, CaPath> paths = new ConcurrentHashMap<>();
+	private final List<Path> ignoredCrls = new ArrayList<>();
+
+	private ChainValidator(Map<X500Principal, List<X509Certificate>> authorities, Map<X500Principal, List<X509CRL>> crls) {
+		this.authorities = authorities;
+		this.crls = crls;
+	}
+
+	/**
+	 * Carga las CA y las CRL de los directorios indicados. Las CA pueden estar en DER o PEM con extensión
+	 * .cer, .crt, .der o .pem, y las CRL con extensión .crl. Las CRL cuya firma no corresponde a una CA
+	 * de confianza se ignoran y se pueden consultar con {@link #getIgnoredCrls()}
+	 * @param caDirectory directorio con las CA raíz e intermedias del SAT
+	 * @param crlDirectory directorio con las CRL o null para no revisar revocación
+	 * @return ChainValidator listo para validar
+	 * @throws IOException si no se pueden leer los directorios
+	 * @throws GeneralSecurityException si algún archivo no es un certificado o CRL válido
+	 */
+	public static ChainValidator load(Path caDirectory, Path crlDirectory) throws IOException, GeneralSecurityException {
+		CertificateFactory factory = CertificateFactory.getInstance("X.509");
+		Map<X500Principal, List<X509Certificate>> authorities = new HashMap<>();
+		for (Path file : list(caDirectory, ".cer", ".crt", ".der", ".pem")) {
+			try (InputStream in = Files.newInputStream(file)) {
+				for (Certificate cert : factory.generateCertificates(in)) {
+					X509Certificate ca = (X509Certificate) cert;
+					authorities.computeIfAbsent(ca.getSubjectX500Principal(), k -> new ArrayList<>()).add(ca);
+				}
+			}
+		}
+		ChainValidator validator = new ChainValidator(authorities, new HashMap<>());
+		if (crlDirectory != null) {
+			for (Path file : list(crlDirectory, ".crl")) {
+				try (InputStream in = Files.newInputStream(file)) {
+					for (CRL crl : factory.generateCRLs(in)) {
+						validator.addCrl((X509CRL) crl, file);
+					}
+				}
+			}
+		}
+		return validator;
+	}
+
+	private static List<Path> list(Path directory, String... extensions) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			return files.filter(Files::isRegularFile).filter(f -> {
+				String name = f.getFileName().toString().toLowerCase();
+				for (String extension : extensions) {
+					if (name.endsWith(extension)) {
+						return true;
+					}
+				}
+				return false;
+			}).sorted().collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Solo se conservan las CRL firmadas por una CA de confianza, su firma se verifica una vez al cargarlas,
+	 * las demás se registran como ignoradas
+	 */
+	private void addCrl(X509CRL crl, Path file) {
+		for (X509Certificate ca : authorities.getOrDefault(crl.getIssuerX500Principal(), Collections.emptyList())) {
+			try {
+				crl.verify(ca.getPublicKey());
+				crls.computeIfAbsent(crl.getIssuerX500Principal(), k -> new ArrayList<>()).add(crl);
+				return;
+			} catch (GeneralSecurityException e) {
+				// Se prueba con la siguiente CA del mismo nombre
+			}
+		}
+		ignoredCrls.add(file);
+	}
+
+	/**
+	 * @return int número de CA cargadas
+	 */
+	public int getAuthorityCount() {
+		return authorities.values().stream().mapToInt(List::size).sum();
+	}
+
+	/**
+	 * @return int número de CRL cargadas
+	 */
+	public int getCrlCount() {
+		return crls.values().stream().mapToInt(List::size).sum();
+	}
+
+	/**
+	 * @return List con los archivos de CRL que no firmó ninguna CA de confianza, una vez por CRL ignorada
+	 */
+	public List<Path> getIgnoredCrls() {
+		return Collections.unmodifiableList(ignoredCrls);
+	}
+
+	/**
+	 * Valida el certificado en la fecha actual
+	 * @param cert certificado a validar
+	 * @throws CertPathValidatorException con la razón si el certificado no es válido
+	 */
+	public void validate(X509Certificate cert) throws CertPathValidatorException {
+		validate(cert, new Date());
+	}
+
+	/**
+	 * Valida vigencia, emisor, firma y revocación del certificado. Si hay CRL de la CA emisora pero todas
+	 * vencieron en la fecha de referencia, el certificado se rechaza con
+	 * {@link BasicReason#UNDETERMINED_REVOCATION_STATUS} a menos que alguna ya lo liste como revocado
+	 * @param cert certificado a validar
+	 * @param at fecha de referencia
+	 * @throws CertPathValidatorException con la razón si el certificado no es válido
+	 */
+	public void validate(X509Certificate cert, Date at) throws CertPathValidatorException {
+		try {
+			cert.checkValidity(at);
+		} catch (CertificateExpiredException e) {
+			throw failure("El certificado venció el " + cert.getNotAfter(), e, BasicReason.EXPIRED);
+		} catch (CertificateNotYetValidException e) {
+			throw failure("El certificado es válido a partir del " + cert.getNotBefore(), e, BasicReason.NOT_YET_VALID);
+		}
+		X509Certificate issuer = findIssuer(cert);
+		if (issuer == null) {
+			throw failure("El certificado no lo emitió ninguna CA de confianza: " + cert.getIssuerX500Principal(), null,
+					PKIXReason.NO_TRUST_ANCHOR);
+		}
+		CaPath path = path(issuer, at.getTime(), 0);
+		if (!path.trusted) {
+			throw failure("La CA emisora no es de confianza: " + path.reason, null, PKIXReason.NO_TRUST_ANCHOR);
+		}
+		List<X509CRL> issuerCrls = crls.getOrDefault(issuer.getSubjectX500Principal(), Collections.emptyList());
+		Date lastNextUpdate = null;
+		boolean current = issuerCrls.isEmpty();
+		for (X509CRL crl : issuerCrls) {
+			if (crl.getRevokedCertificate(cert) != null) {
+				throw failure("El certificado está revocado desde el "
+						+ crl.getRevokedCertificate(cert).getRevocationDate(), null, BasicReason.REVOKED);
+			}
+			Date nextUpdate = crl.getNextUpdate();
+			if (nextUpdate == null || !at.after(nextUpdate)) {
+				current = true;
+			} else if (lastNextUpdate == null || nextUpdate.after(lastNextUpdate)) {
+				lastNextUpdate = nextUpdate;
+			}
+		}
+		if (!current) {
+			throw failure("La CRL de " + issuer.getSubjectX500Principal() + " venció el " + lastNextUpdate
+					+ ", no se puede saber si el certificado está revocado", null, BasicReason.UNDETERMINED_REVOCATION_STATUS);
+		}
+	}
+
+	/**
+	 * Busca la CA cuya llave verifica la firma del certificado, es la única verificación de firma por certificado
+	 */
+	private X509Certificate findIssuer(X509Certificate cert) {
+		for (X509Certificate ca : authorities.getOrDefault(cert.getIssuerX500Principal(), Collections.emptyList())) {
+			try {
+				cert.verify(ca.getPublicKey());
+				return ca;
+			} catch (GeneralSecurityException e) {
+				// Se prueba con la siguiente CA del mismo nombre
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Valida la ruta de la CA hasta una raíz autofirmada del directorio, el resultado se guarda en caché
+	 * y solo se reutiliza para fechas dentro de la vigencia de todos los certificados de la ruta
+	 */
+	private CaPath path(X509Certificate ca, long now, int depth) {
+		CaPath cached = paths.get(ca);
+		if (cached != null && cached.appliesAt(now)) {
+			return cached;
+		}
+		long notBefore = ca.getNotBefore().getTime();
+		long notAfter = ca.getNotAfter().getTime();
+		CaPath result;
+		if (depth > MAX_PATH_LENGTH) {
+			result = new CaPath(false, Long.MIN_VALUE, Long.MAX_VALUE, "la ruta excede " + MAX_PATH_LENGTH + " certificados");
+		} else if (now < notBefore || now > notAfter) {
+			result = new CaPath(false, now, now, "la CA " + ca.getSubjectX500Principal() + " no está vigente");
+		} else if (ca.getBasicConstraints() < 0) {
+			result = new CaPath(false, Long.MIN_VALUE, Long.MAX_VALUE, ca.getSubjectX500Principal() + " no es una CA");
+		} else if (ca.getSubjectX500Principal().equals(ca.getIssuerX500Principal()) && selfSigned(ca)) {
+			result = new CaPath(true, notBefore, notAfter, "");
+		} else {
+			X509Certificate parent = findIssuer(ca);
+			if (parent == null) {
+				result = new CaPath(false, now, now, "no se encontró la CA de " + ca.getSubjectX500Principal());
+			} else {
+				CaPath parentPath = path(parent, now, depth + 1);
+				result = new CaPath(parentPath.trusted, Math.max(parentPath.validFrom, notBefore),
+						Math.min(parentPath.validUntil, notAfter), parentPath.reason);
+			}
+		}
+		paths.put(ca, result);
+		return result;
+	}
+
+	private static boolean selfSigned(X509Certificate ca) {
+		try {
+			ca.verify(ca.getPublicKey());
+			return true;
+		} catch (GeneralSecurityException e) {
+			return false;
+		}
+	}
+
+	private static CertPathValidatorException failure(String message, Throwable cause, CertPathValidatorException.Reason reason) {
+		return new CertPathValidatorException(message, cause, null, -1, reason);
+	}
+}
@@ -0,0 +1,118 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cliente de carga para medir el rendimiento de {@link ConversionServer} en un mismo equipo.
+ * Envía la misma FIEL el número de veces indicado con la concurrencia indicada y muestra
+ * conversiones por segundo y percentiles de latencia.
+ * <pre>
+ * java -cp fieltojks.jar:deps/* com.mencrypto.sat.util.crypto.ConversionLoadTest url key cer password [peticiones] [concurrencia] [formato]
+ * </pre>
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class ConversionLoadTest {
+
+	private ConversionLoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4) {
+			System.out.println("Forma de ejecución: ConversionLoadTest url key cer password [peticiones] [concurrencia] [formato]");
+			System.exit(1);
+		}
+		URI uri = URI.create(args[0]);
+		int requests = (args.length > 4) ? Integer.parseInt(args[4]) : 1000;
+		int concurrency = (args.length > 5) ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		String format = (args.length > 6) ? args[6] : "p12";
+
+		String boundary = "fiel-" + UUID.randomUUID();
+		byte[] body = multipart(boundary, Files.readAllBytes(Path.of(args[1])), Files.readAllBytes(Path.of(args[2])),
+				args[3], format);
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		HttpRequest request = HttpRequest.newBuilder(uri)
+				.header("Content-Type", "multipart/form-data; boundary=" + boundary)
+				.POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+
+		long[] latencies = new long[requests];
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger failures = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		ExecutorService pool = WorkerThreads.newFixedExecutor(concurrency, "fiel-load");
+		long start = System.nanoTime();
+		List<Future<?>> workers = new ArrayList<>();
+		for (int w = 0; w < concurrency; w++) {
+			workers.add(pool.submit(() -> {
+				int i;
+				while ((i = next.getAndIncrement()) < requests) {
+					long begin = System.nanoTime();
+					try {
+						HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+						if (response.statusCode() == 503) {
+							rejected.incrementAndGet();
+						} else if (response.statusCode() != 200) {
+							failures.incrementAndGet();
+						}
+					} catch (IOException e) {
+						failures.incrementAndGet();
+					}
+					latencies[i] = System.nanoTime() - begin;
+				}
+				return null;
+			}));
+		}
+		for (Future<?> worker : workers) {
+			worker.get();
+		}
+		long elapsed = System.nanoTime() - start;
+		pool.shutdown();
+
+		Arrays.sort(latencies);
+		double seconds = elapsed / 1e9;
+		System.out.printf("Peticiones: %d, concurrencia: %d, formato: %s%n", requests, concurrency, format);
+		System.out.printf("Errores: %d, rechazadas (503): %d%n", failures.get(), rejected.get());
+		System.out.printf("Tiempo total: %.2f s, rendimiento: %.1f conversiones/s%n", seconds, requests / seconds);
+		System.out.printf("Latencia ms p50: %.2f p90: %.2f p99: %.2f max: %.2f%n", percentile(latencies, 50),
+				percentile(latencies, 90), percentile(latencies, 99), latencies[latencies.length - 1] / 1e6);
+	}
+
+	private static double percentile(long[] sorted, int percentile) {
+		int idx = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, idx)] / 1e6;
+	}
+
+	private static byte[] multipart(String boundary, byte[] key, byte[] cer, String password, String format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		part(out, boundary, "key", key);
+		part(out, boundary, "cer", cer);
+		part(out, boundary, "password", password.getBytes(StandardCharsets.UTF_8));
+		part(out, boundary, "format", format.getBytes(StandardCharsets.US_ASCII));
+		out.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+		return out.toByteArray();
+	}
+
+	private static void part(ByteArrayOutputStream out, String boundary, String name, byte[] content) throws IOException {
+		out.write(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n")
+				.getBytes(StandardCharsets.US_ASCII));
+		out.write(content);
+		out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+	}
+}
@@ -0,0 +1,298 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mide cada etapa de la conversión. Cada etapa emite un {@link StageEvent} de JFR y, si las
+ * métricas están activas, guarda su duración para el resumen JSON de la opción --metrics con
+ * percentiles por etapa, rendimiento total y conteo de errores por {@link FailureReason}
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+final class ConversionMetrics {
+
+	/**
+	 * Etapas de la conversión
+	 */
+	enum Stage {
+		/** Lectura de la llave y el certificado del disco */
+		READ,
+		/** Análisis ASN.1 del certificado */
+		CERTIFICATE,
+		/** Descifrado PKCS#8 de la llave */
+		PRIVATE_KEY,
+		/** Armado del KeyStore en memoria */
+		KEYSTORE,
+		/** Protección y codificación del KeyStore */
+		STORE,
+		/** Escritura del resultado en disco */
+		WRITE,
+		/** Codificación PEM */
+		PEM,
+		/** Conversión completa */
+		CONVERSION
+	}
+
+	/**
+	 * Histograma de duraciones de tamaño fijo, al estilo de HdrHistogram: los valores menores a 64
+	 * tienen cubeta propia y cada potencia de dos arriba de eso se divide en 64 cubetas iguales, así
+	 * el percentil se reporta con un error relativo menor a 1/64 sin importar cuántas conversiones
+	 * se midan. La cuenta, la suma y el máximo son exactos
+	 */
+	static final class Histogram {
+		private static final int SUB_BITS = 6;
+		private static final int SUB_COUNT = 1 << SUB_BITS;
+		private static final int BUCKETS = SUB_COUNT + (Long.SIZE - 1 - SUB_BITS) * SUB_COUNT;
+
+		private final long[] counts = new long[BUCKETS];
+		private long count;
+		private long sum;
+		private long max;
+
+		synchronized void add(long value) {
+			long nanos = Math.max(0, value);
+			counts[index(nanos)]++;
+			count++;
+			sum += nanos;
+			max = Math.max(max, nanos);
+		}
+
+		synchronized long count() {
+			return count;
+		}
+
+		synchronized long sum() {
+			return sum;
+		}
+
+		synchronized long max() {
+			return max;
+		}
+
+		/**
+		 * @param percentile percentil entre 0 y 100
+		 * @return long límite superior de la cubeta del percentil, nunca mayor al máximo medido
+		 */
+		synchronized long percentile(double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(highest(i), max);
+				}
+			}
+			return max;
+		}
+
+		static int index(long value) {
+			if (value < SUB_COUNT) {
+				return (int) value;
+			}
+			int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+			int shift = exponent - SUB_BITS;
+			return SUB_COUNT + shift * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+		}
+
+		static long highest(int index) {
+			if (index < SUB_COUNT) {
+				return index;
+			}
+			int shift = (index - SUB_COUNT) / SUB_COUNT;
+			long lowest = (long) (SUB_COUNT + (index - SUB_COUNT) % SUB_COUNT) << shift;
+			return lowest + (1L << shift) - 1;
+		}
+	}
+
+	/**
+	 * Duraciones de una etapa
+	 */
+	private static final class Samples {
+		private final Histogram nanos = new Histogram();
+		private final LongAdder failures = new LongAdder();
+	}
+
+	/**
+	 * Medición en curso de una etapa
+	 */
+	static final class Timer {
+		private final Stage stage;
+		private final StageEvent event = new StageEvent();
+		private final long start = System.nanoTime();
+
+		private Timer(Stage stage) {
+			this.stage = stage;
+			event.begin();
+		}
+
+		/**
+		 * Termina la etapa correctamente
+		 */
+		void stop() {
+			finish(null);
+		}
+
+		/**
+		 * Termina la etapa, si error no es nulo se cuenta como fallida
+		 * @param error excepción de la etapa o null
+		 */
+		void finish(Throwable error) {
+			long elapsed = System.nanoTime() - start;
+			event.end();
+			if (event.shouldCommit()) {
+				event.stage = stage.name();
+				event.success = error == null;
+				event.failure = (error == null) ? null : FailureReason.of(error).name();
+				event.commit();
+			}
+			if (enabled) {
+				Samples samples = STAGES.get(stage);
+				samples.nanos.add(elapsed);
+				if (error != null) {
+					samples.failures.increment();
+				}
+			}
+		}
+	}
+
+	private static final Map<Stage, Samples> STAGES = new EnumMap<>(Stage.class);
+	private static final Map<FailureReason, LongAdder> FAILURES = new EnumMap<>(FailureReason.class);
+
+	static {
+		for (Stage stage : Stage.values()) {
+			STAGES.put(stage, new Samples());
+		}
+		for (FailureReason reason : FailureReason.values()) {
+			FAILURES.put(reason, new LongAdder());
+		}
+	}
+
+	private static volatile boolean enabled;
+	private static volatile long enabledAt;
+
+	private ConversionMetrics() {
+	}
+
+	/**
+	 * Activa la captura de duraciones para el resumen, los eventos JFR no dependen de esto
+	 */
+	static void enable() {
+		enabledAt = System.nanoTime();
+		enabled = true;
+	}
+
+	static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param stage etapa que inicia
+	 * @return Timer que se debe terminar con {@link Timer#stop()} o {@link Timer#finish(Throwable)}
+	 */
+	static Timer start(Stage stage) {
+		return new Timer(stage);
+	}
+
+	/**
+	 * Paso de una etapa que puede fallar
+	 */
+	interface Step<T> {
+		T run() throws IOException, GeneralSecurityException;
+	}
+
+	/**
+	 * Ejecuta y mide una etapa, el error se registra y se vuelve a lanzar
+	 * @param stage etapa
+	 * @param step paso a ejecutar
+	 * @return T resultado del paso
+	 * @throws IOException si el paso falla al leer o escribir
+	 * @throws GeneralSecurityException si el paso falla por la llave, el certificado o el KeyStore
+	 */
+	static <T> T time(Stage stage, Step<T> step) throws IOException, GeneralSecurityException {
+		Timer timer = start(stage);
+		try {
+			T result = step.run();
+			timer.stop();
+			return result;
+		} catch (IOException | GeneralSecurityException | RuntimeException e) {
+			timer.finish(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Cuenta un error de conversión por su causa
+	 * @param error excepción de la conversión
+	 * @return FailureReason con que se contó
+	 */
+	static FailureReason failure(Throwable error) {
+		FailureReason reason = FailureReason.of(error);
+		failure(reason);
+		return reason;
+	}
+
+	/**
+	 * Cuenta un error que no viene de una excepción, por ejemplo una llave que no corresponde al certificado
+	 * @param reason causa del error
+	 */
+	static void failure(FailureReason reason) {
+		FAILURES.get(reason).increment();
+	}
+
+	/**
+	 * @return String JSON con los percentiles en milisegundos de cada etapa, el rendimiento y los errores
+	 */
+	static String toJson() {
+		double seconds = (System.nanoTime() - enabledAt) / 1e9;
+		Samples conversions = STAGES.get(Stage.CONVERSION);
+		long completed = conversions.nanos.count() - conversions.failures.sum();
+		StringBuilder json = new StringBuilder(1024);
+		json.append("{\n  \"elapsedSeconds\": ").append(format(seconds))
+				.append(",\n  \"conversions\": ").append(completed)
+				.append(",\n  \"throughputPerSecond\": ").append(format(seconds > 0 ? completed / seconds : 0))
+				.append(",\n  \"stages\": {");
+		String separator = "\n";
+		for (Map.Entry<Stage, Samples> entry : STAGES.entrySet()) {
+			Histogram nanos = entry.getValue().nanos;
+			long count = nanos.count();
+			if (count == 0) {
+				continue;
+			}
+			json.append(separator).append("    \"").append(entry.getKey()).append("\": {")
+					.append("\"count\": ").append(count)
+					.append(", \"failures\": ").append(entry.getValue().failures.sum())
+					.append(", \"p50\": ").append(millis(nanos.percentile(50)))
+					.append(", \"p90\": ").append(millis(nanos.percentile(90)))
+					.append(", \"p99\": ").append(millis(nanos.percentile(99)))
+					.append(", \"max\": ").append(millis(nanos.max()))
+					.append(", \"total\": ").append(millis(nanos.sum()))
+					.append('}');
+			separator = ",\n";
+		}
+		json.append("\n  },\n  \"failures\": {");
+		separator = "";
+		for (Map.Entry<FailureReason, LongAdder> entry : FAILURES.entrySet()) {
+			json.append(separator).append('"').append(entry.getKey()).append("\": ").append(entry.getValue().sum());
+			separator = ", ";
+		}
+		return json.append("}\n}").toString();
+	}
+
+	private static String millis(long nanos) {
+		return format(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+}
@@ -0,0 +1,77 @@
+package com.mencrypto.sat.util.crypto;
+
+/**
+ * Resultado de una conversión de {@link AsyncConverter}, correcta con la salida o fallida con su causa
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class ConversionResult {
+
+	private final OutputFormat format;
+	private final byte[] output;
+	private final FailureReason failureReason;
+	private final Throwable error;
+	private final long millis;
+
+	private ConversionResult(OutputFormat format, byte[] output, FailureReason failureReason, Throwable error, long millis) {
+		this.format = format;
+		this.output = output;
+		this.failureReason = failureReason;
+		this.error = error;
+		this.millis = millis;
+	}
+
+	static ConversionResult success(OutputFormat format, byte[] output, long millis) {
+		return new ConversionResult(format, output, null, null, millis);
+	}
+
+	static ConversionResult failure(OutputFormat format, FailureReason failureReason, Throwable error, long millis) {
+		return new ConversionResult(format, null, failureReason, error, millis);
+	}
+
+	public boolean isSuccess() {
+		return failureReason == null;
+	}
+
+	public OutputFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return byte[] con el KeyStore o con la llave y el certificado en PEM, null si la conversión falló.
+	 * No se copia, quien lo recibe es responsable de limpiarlo
+	 */
+	public byte[] getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return FailureReason de la falla o null si la conversión fue correcta
+	 */
+	public FailureReason getFailureReason() {
+		return failureReason;
+	}
+
+	/**
+	 * @return Throwable con el detalle de la falla o null si la conversión fue correcta
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * @return long milisegundos de la conversión, sin contar la espera en la cola
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	@Override
+	public String toString() {
+		if (isSuccess()) {
+			return "ConversionResult[" + format + ", " + output.length + " bytes, " + millis + " ms]";
+		}
+		return "ConversionResult[" + format + ", " + failureReason + ": " + error.getMessage() + ", " + millis + " ms]";
+	}
+}
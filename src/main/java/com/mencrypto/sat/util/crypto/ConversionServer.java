@@ -0,0 +1,249 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.UnrecoverableKeyException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Servidor HTTP local que convierte FIEL bajo demanda manteniendo la JVM y el proveedor
+ * BouncyCastle cargados entre peticiones.
+ * <p>
+ * {@code POST /convert} recibe un cuerpo multipart/form-data con las partes {@code cer}, {@code key},
+ * {@code password} y opcionalmente {@code passwordFinal}, {@code format} (p12, jks o pem),
+ * {@code profile} e {@code iterations} (ver {@link ProtectionProfile}), y
+ * responde con el contenido generado. {@code GET /health} responde OK mientras el servidor acepta peticiones.
+ * Cada petición corre en su propio hilo, virtual si la JVM lo permite, y el número de conversiones
+ * simultáneas está limitado, cuando se alcanza el límite se responde 503.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class ConversionServer {
+
+	/** Tamaño máximo del cuerpo de una petición, una FIEL pesa unos pocos KB */
+	static final int MAX_BODY_BYTES = 1 << 20;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Semaphore permits;
+	private final long queueTimeoutMillis;
+	private final FielConverter converter;
+	private volatile boolean accepting = true;
+
+	/**
+	 * @param address dirección y puerto en los que escucha el servidor
+	 * @param maxConcurrent conversiones simultáneas permitidas, si es menor a 1 se usa el número de núcleos
+	 * @param queueTimeoutMillis tiempo que una petición espera un lugar antes de responder 503
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public ConversionServer(InetSocketAddress address, int maxConcurrent, long queueTimeoutMillis) throws IOException {
+		this(address, maxConcurrent, queueTimeoutMillis, FielConverter.getDefault());
+	}
+
+	/**
+	 * @param address dirección y puerto en los que escucha el servidor
+	 * @param maxConcurrent conversiones simultáneas permitidas, si es menor a 1 se usa el número de núcleos
+	 * @param queueTimeoutMillis tiempo que una petición espera un lugar antes de responder 503
+	 * @param converter motor de conversión, por ejemplo con un {@link KeyCache}
+	 * @throws IOException si no se puede abrir el puerto
+	 */
+	public ConversionServer(InetSocketAddress address, int maxConcurrent, long queueTimeoutMillis, FielConverter converter)
+			throws IOException {
+		this.converter = converter;
+		this.permits = new Semaphore((maxConcurrent < 1) ? Runtime.getRuntime().availableProcessors() : maxConcurrent);
+		this.queueTimeoutMillis = queueTimeoutMillis;
+		this.executor = WorkerThreads.newPerTaskExecutor("fiel-http");
+		this.server = HttpServer.create(address, 0);
+		server.setExecutor(executor);
+		server.createContext("/convert", this::handleConvert);
+		server.createContext("/health", this::handleHealth);
+	}
+
+	/**
+	 * Inicia el servidor, las peticiones se atienden en segundo plano
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * @return InetSocketAddress en la que escucha el servidor
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Detiene el servidor de forma ordenada, deja de aceptar peticiones y espera a que
+	 * terminen las que están en curso hasta el tiempo indicado, el servidor y el ejecutor comparten
+	 * el mismo plazo
+	 * @param graceSeconds segundos de espera para las peticiones en curso
+	 */
+	public void stop(int graceSeconds) {
+		accepting = false;
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(0, graceSeconds));
+		server.stop(graceSeconds);
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void handleHealth(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			String status = accepting ? "OK" : "STOPPING";
+			if (converter.getKeyCache() != null) {
+				status += "\n" + converter.getKeyCache();
+			}
+			send(exchange, accepting ? 200 : 503, "text/plain", status.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private void handleConvert(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Solo se permite POST");
+				return;
+			}
+			String boundary = MultipartParser.boundary(exchange.getRequestHeaders().getFirst("Content-Type"));
+			if (boundary == null) {
+				sendError(exchange, 415, "Se espera multipart/form-data");
+				return;
+			}
+			byte[] body = readBody(exchange.getRequestBody());
+			if (body == null) {
+				sendError(exchange, 413, "El cuerpo excede " + MAX_BODY_BYTES + " bytes");
+				return;
+			}
+			Map<String, byte[]> parts;
+			try {
+				parts = MultipartParser.parse(body, boundary);
+			} catch (IOException e) {
+				sendError(exchange, 400, e.getMessage());
+				return;
+			}
+			if (!parts.containsKey("cer") || !parts.containsKey("key") || !parts.containsKey("password")) {
+				sendError(exchange, 400, "Se requieren las partes cer, key y password");
+				return;
+			}
+			char[] password = chars(parts.get("password"));
+			char[] passwordFinal = chars(parts.get("passwordFinal"));
+			boolean acquired = false;
+			// Las contraseñas se limpian en cualquier salida, también si la petición se rechaza
+			try {
+				if (password == null) {
+					sendError(exchange, 400, "La contraseña no puede estar vacía");
+					return;
+				}
+				OutputFormat format;
+				ProtectionProfile profile;
+				try {
+					format = OutputFormat.parse(text(parts.get("format")));
+					String iterations = text(parts.get("iterations"));
+					profile = ProtectionProfile.parse(text(parts.get("profile")), (iterations == null) ? 0 : Integer.parseInt(iterations));
+				} catch (IllegalArgumentException e) {
+					sendError(exchange, 400, "Formato o perfil no soportado");
+					return;
+				}
+				acquired = permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+				if (!acquired) {
+					exchange.getResponseHeaders().set("Retry-After", "1");
+					sendError(exchange, 503, "Servidor saturado, intente más tarde");
+					return;
+				}
+				byte[] result = converter.convert(parts.get("key"), parts.get("cer"), password, passwordFinal, format, profile);
+				exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"fiel" + format.getExtension() + "\"");
+				send(exchange, 200, contentType(format), result);
+			} catch (UnrecoverableKeyException e) {
+				ConversionMetrics.failure(e);
+				sendError(exchange, 422, "Error no coincide la contraseña con la llave");
+			} catch (GeneralSecurityException | IOException e) {
+				sendError(exchange, 422, "No se pudo convertir la FIEL " + ConversionMetrics.failure(e) + ": " + e.getMessage());
+			} finally {
+				if (acquired) {
+					permits.release();
+				}
+				if (password != null) {
+					Arrays.fill(password, '\0');
+				}
+				if (passwordFinal != null) {
+					Arrays.fill(passwordFinal, '\0');
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			sendError(exchange, 500, "Error interno: " + e.getClass().getSimpleName());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Lee el cuerpo completo, regresa null si excede el máximo permitido
+	 */
+	private static byte[] readBody(InputStream in) throws IOException {
+		byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+		return (body.length > MAX_BODY_BYTES) ? null : body;
+	}
+
+	private static String text(byte[] value) {
+		return (value == null) ? null : new String(value, StandardCharsets.UTF_8).trim();
+	}
+
+	/**
+	 * Decodifica una contraseña sin pasar por String para poder limpiarla después
+	 */
+	private static char[] chars(byte[] value) {
+		if (value == null || value.length == 0) {
+			return null;
+		}
+		CharBuffer decoded = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(value));
+		char[] password = Arrays.copyOf(decoded.array(), decoded.limit());
+		Arrays.fill(decoded.array(), '\0');
+		Arrays.fill(value, (byte) 0);
+		return password;
+	}
+
+	private static String contentType(OutputFormat format) {
+		switch (format) {
+		case P12:
+			return "application/x-pkcs12";
+		case PEM:
+			return "application/x-pem-file";
+		default:
+			return "application/octet-stream";
+		}
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		send(exchange, status, "text/plain; charset=utf-8", message.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
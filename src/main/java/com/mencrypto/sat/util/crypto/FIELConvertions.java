@@ -1,47 +1,15 @@
 package com.mencrypto.sat.util.crypto;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
-import java.security.PrivateKey;
-import java.security.Security;
-import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
-import java.security.cert.X509Certificate;
-import java.util.HashMap;
-import java.util.Map;
-
-import javax.security.auth.x500.X500Principal;
-
-import org.bouncycastle.asn1.ASN1Sequence;
-import org.bouncycastle.asn1.pkcs.EncryptedPrivateKeyInfo;
-import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
-import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
-import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.openssl.PEMException;
-import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
-import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
-import org.bouncycastle.openssl.jcajce.JceOpenSSLPKCS8DecryptorProviderBuilder;
-import org.bouncycastle.operator.InputDecryptorProvider;
-import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.pkcs.PKCS8EncryptedPrivateKeyInfo;
-import org.bouncycastle.pkcs.PKCSException;
-import org.bouncycastle.util.io.pem.PemObject;
+import java.security.GeneralSecurityException;
 
 /**
  * Clase de utileria para tratar certificados  y llaves de la Firma Electronica FIEL
  * emitida por el Sistema de Administración Tributaría SAT
  * Permite convertir a almacenes de llave pfx o p12 y  Java Key Store JKS
  * Lo que puede ayudar en la automatización o uso en otros proyectos
+ * Los métodos delegan en la instancia compartida de {@link FielConverter}
  * 
  * @author Mencryto
  * @version 1.0
@@ -56,21 +24,13 @@ public class FIELConvertions {
 	 * @param password Es la contraseña para la llave FIEL
 	 * @return String con la ruta en la que se escribió el archivo .pem
 	 */
-	static String convertKeyDERToPEM(File keypkcs8, String password) {
-		// Ruta donde se guardará el archivo PEM sin contraseña con extensión .pem
-		String outputhPath = keypkcs8.getAbsolutePath().substring(0, keypkcs8.getAbsolutePath().lastIndexOf("."))+ ".pem";
-
-		PrivateKey privatKey = loadPrivateKey(keypkcs8, password);
-		// Cambiar de llave RSA a PEM sin contraseña
-		PemObject pemObject = new PemObject("PRIVATE KEY", privatKey.getEncoded());
-		File outputPemFile = new File(outputhPath);
-		// Escribir PEM SIN contraseña
-		try (JcaPEMWriter pemWriter = new JcaPEMWriter(new FileWriter(outputPemFile))) {
-			pemWriter.writeObject(pemObject);
+	static String convertKeyDERToPEM(File keypkcs8, char[] password) {
+		try {
+			String outputhPath = FielConverter.getDefault().writeKeyPEM(keypkcs8, password);
 			System.out.println("Llave PEM generada correctamente en: " + outputhPath);
 			return outputhPath;
-		} catch (IOException e) {
-			e.printStackTrace();
+		} catch (IOException | GeneralSecurityException e) {
+			reportFailure(e);
 		}
 		return null;
 	}
@@ -83,36 +43,12 @@ public class FIELConvertions {
 	 * @return String con la ruta en la que se escribió el archivo .pem
 	 */
 	static String convertcerx509ToPEM(File certx509) {
-		// Permite usar algoritmos de cifrado adicionales que no están en la implementación base de Java
-		Security.addProvider(new BouncyCastleProvider());
-
-		String outputhPath = certx509.getAbsolutePath().substring(0, certx509.getAbsolutePath().lastIndexOf("."))+ "_CER.pem";
-
-		// 1. Leer DER y crear objeto x509 que lo contiene
-		byte[] derBytes = null;
 		try {
-			derBytes = Files.readAllBytes(certx509.toPath());
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-
-		X509CertificateHolder certHolder = null;
-		try {
-			certHolder = new X509CertificateHolder(derBytes);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		SubjectPublicKeyInfo publicKey = certHolder.getSubjectPublicKeyInfo();
-
-		File outputPemFile = new File(outputhPath);
-		// Escribe la llave pública y el certificado en formato PEM que de otra forma certHolder solo escribe el certificado
-		try (JcaPEMWriter pemWriter = new JcaPEMWriter(new FileWriter(outputPemFile))) {
-			pemWriter.writeObject(publicKey);
-			pemWriter.writeObject(certHolder);
+			String outputhPath = FielConverter.getDefault().writeCertificatePEM(certx509);
 			System.out.println("Certificado PEM generado correctamente en: "+ outputhPath);
 			return outputhPath;
 		} catch (IOException e) {
-			e.printStackTrace();
+			reportFailure(e);
 		}
 		return null;
 	}
@@ -129,36 +65,23 @@ public class FIELConvertions {
 	 * @param jks Indica con true que debe crearse un JKS en lugar de p12 o pfx
 	 * @return String con la ruta en la que se escribió el archivo p12
 	 */
-	private static String createKSWithCertAndKey(File keypkcs8, File certx509, String oldPassword, String newPassword, Boolean jks) {
-		String extension = (!jks) ? ".p12" : ".jks"; 
-		String outputhPath = certx509.getAbsolutePath().substring(0, certx509.getAbsolutePath().lastIndexOf("."))+ extension;
-		X509Certificate cert = loadCertificate(certx509);
-		String RFC = getRFCFromCert(cert);
-		PrivateKey privateKey = loadPrivateKey(keypkcs8, oldPassword);
-		// Guardar el archivo PKCS12
-		try (FileOutputStream fos = new FileOutputStream(outputhPath)) {
-			// Inicializar el almacén de claves (vacío)
-			KeyStore keyStore = (!jks) ?  KeyStore.getInstance("PKCS12", "BC") : KeyStore.getInstance("JKS");
-			keyStore.load(null, null);
-			String password = (newPassword == null) ? oldPassword : newPassword;
-			keyStore.setKeyEntry(RFC, privateKey, password.toCharArray(),
-					new java.security.cert.Certificate[] { cert });
-			keyStore.store(fos, password.toCharArray());
+	private static String createKSWithCertAndKey(File keypkcs8, File certx509, char[] oldPassword, char[] newPassword, Boolean jks) {
+		return createKSWithCertAndKey(keypkcs8, certx509, oldPassword, newPassword, jks, ProtectionProfile.bcDefault());
+	}
+	
+	/**
+	 * Igual que {@link #createKSWithCertAndKey(File, File, char[], char[], Boolean)} con el perfil de protección del p12
+	 * @param profile perfil de protección, no aplica a JKS
+	 * @return String con la ruta en la que se escribió el archivo
+	 */
+	private static String createKSWithCertAndKey(File keypkcs8, File certx509, char[] oldPassword, char[] newPassword, Boolean jks, ProtectionProfile profile) {
+		try {
+			String outputhPath = FielConverter.getDefault().writeKeyStore(keypkcs8, certx509, oldPassword, newPassword,
+					(!jks) ? OutputFormat.P12 : OutputFormat.JKS, profile);
 			System.out.println("Keystore generado correctamente en: "+ outputhPath);
 			return outputhPath;
-		} catch (KeyStoreException e) {
-			System.out.println("Error no coincide la contraseña con la llave\n");
-			e.printStackTrace();
-		} catch (NoSuchProviderException e) {
-			e.printStackTrace();
-		} catch (FileNotFoundException e1) {
-			e1.printStackTrace();
-		} catch (IOException e1) {
-			e1.printStackTrace();
-		} catch (NoSuchAlgorithmException e) {
-			e.printStackTrace();
-		} catch (CertificateException e) {
-			e.printStackTrace();
+		} catch (IOException | GeneralSecurityException e) {
+			reportFailure(e);
 		}
 		return null;
 	}
@@ -174,10 +97,26 @@ public class FIELConvertions {
 	 * @param newPassword Es la contraseña para el nuevo archovo p12 y su llave
 	 * @return String con la ruta en la que se escribió el archivo p12
 	 */
-	static String createPKCS12withCertAndKey(File keypkcs8, File certx509, String oldPassword, String newPassword) {
+	static String createPKCS12withCertAndKey(File keypkcs8, File certx509, char[] oldPassword, char[] newPassword) {
 		return createKSWithCertAndKey(keypkcs8, certx509, oldPassword, newPassword, false);
 	}
 	
+	/**
+	 * Convierte una llave en formato pkcs8 con contraseña y su certificado con llave pública en formato der 
+	 * a un archivo p12 o pfx protegido con el perfil indicado y la escribe en la misma ruta en que se encuentre 
+	 * el archivo original
+	 * Sirve para la Firma Electrónica FIEL del Sistema de Administración Tributaria SAT de México
+	 * @param keypkcs8 File de la ubicación de la llave o .key
+	 * @param certx509 File de la ubicación del certificado
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo archovo p12 y su llave, si es nula se usa oldPassword
+	 * @param profile perfil de protección del p12 (legacy, modern, fast o el default de BouncyCastle)
+	 * @return String con la ruta en la que se escribió el archivo p12
+	 */
+	static String createPKCS12withCertAndKey(File keypkcs8, File certx509, char[] oldPassword, char[] newPassword, ProtectionProfile profile) {
+		return createKSWithCertAndKey(keypkcs8, certx509, oldPassword, newPassword, false, profile);
+	}
+	
 	/**
 	 * Convierte una llave en formato pkcs8 con contraseña y su certificado con llave pública en formato der 
 	 * a un archivo p12 o pfx con la misma contraseña y la escribe en la misma ruta en que se encuentre 
@@ -188,7 +127,7 @@ public class FIELConvertions {
 	 * @param password Es la contraseña para la llave FIEL
 	 * @return String con la ruta en la que se escribió el archivo p12
 	 */
-	static String createPKCS12withCertAndKey(File keypkcs8, File certx509, String password) {
+	static String createPKCS12withCertAndKey(File keypkcs8, File certx509, char[] password) {
 		return createKSWithCertAndKey(keypkcs8, certx509, password, null, false);
 	}
 	
@@ -202,7 +141,7 @@ public class FIELConvertions {
 	 * @param password Es la contraseña para la llave FIEL
 	 * @return String con la ruta en la que se escribió el archivo p12
 	 */
-	static String createJKSwithCertAndKey(File keypkcs8, File certx509, String password) {
+	static String createJKSwithCertAndKey(File keypkcs8, File certx509, char[] password) {
 		return createKSWithCertAndKey(keypkcs8, certx509, password, null, true);
 	}
 	
@@ -217,88 +156,62 @@ public class FIELConvertions {
 	 * @param newPassword Es la contraseña para el nuevo archovo p12 y su llave
 	 * @return String con la ruta en la que se escribió el archivo p12
 	 */
-	static String createJKSwithCertAndKey(File keypkcs8, File certx509, String oldPassword, String newPassword) {
+	static String createJKSwithCertAndKey(File keypkcs8, File certx509, char[] oldPassword, char[] newPassword) {
 		return createKSWithCertAndKey(keypkcs8, certx509, oldPassword, newPassword, true);
 	}
 	
 	/**
-	 * Genera un objeto PrivateKey a partir de una llave en formato PKCS8 con contraseña
-	 * @param keypkcs8 File de la ubicación de la llave o .key
-	 * @param password Es la contraseña para la llave FIEL
-	 * @return PrivateKey representación del objeto llave para Java
+	 * Convierte en memoria el contenido de una llave en formato pkcs8 con contraseña y de su certificado
+	 * en formato der a un p12 o pfx sin escribir archivos, útil cuando se reciben como carga en un servicio
+	 * Sirve para la Firma Electrónica FIEL del Sistema de Administración Tributaria SAT de México
+	 * @param keypkcs8 contenido de la llave o .key
+	 * @param certx509 contenido del certificado
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo p12, si es nula se usa oldPassword
+	 * @return byte[] con el contenido del p12
 	 */
-	private static PrivateKey loadPrivateKey(File keypkcs8, String password) {
-		// Permite usar algoritmos de cifrado adicionales que no están en la implementación base de Java
-		Security.addProvider(new BouncyCastleProvider());
-		// 1. Leer DER y crear objeto PKCS8EncryptedPrivateKeyInfo que lo contiene
-		byte[] derBytes = null;
-		try {
-			derBytes = Files.readAllBytes(keypkcs8.toPath());
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		ASN1Sequence derseq = ASN1Sequence.getInstance(derBytes);
-		PKCS8EncryptedPrivateKeyInfo encobj = new PKCS8EncryptedPrivateKeyInfo(
-				EncryptedPrivateKeyInfo.getInstance(derseq));
-		JcaPEMKeyConverter converter = new JcaPEMKeyConverter();
-		
-		InputDecryptorProvider decryptionProv;
-		try {
-			decryptionProv = new JceOpenSSLPKCS8DecryptorProviderBuilder().build(password.toCharArray());
-			PrivateKeyInfo keyInfo = encobj.decryptPrivateKeyInfo(decryptionProv);
-			PrivateKey privateKey = converter.getPrivateKey(keyInfo);
-			return privateKey;
-		} catch (OperatorCreationException e) {
-			e.printStackTrace();
-		} catch (PKCSException e) {
-			System.out.println("Error no coincide la contraseña con la llave\n");
-			e.printStackTrace();
-		} catch (PEMException e) {
-			e.printStackTrace();
-		}
-		return null;
+	static byte[] createPKCS12withCertAndKey(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword) {
+		return createKSWithCertAndKey(keypkcs8, certx509, oldPassword, newPassword, OutputFormat.P12);
 	}
-    
+	
 	/**
-	 * Genera un objeto X509Certificate a partir de una certificado en formato DER 
-	 * con llave pública
-	 * @param certFile File de la ubicación del certificado
-	 * @return X509Certificate representación del objeto certificado para Java
+	 * Convierte en memoria el contenido de una llave en formato pkcs8 con contraseña y de su certificado
+	 * en formato der a un JKS (Java Key Store) sin escribir archivos
+	 * Sirve para la Firma Electrónica FIEL del Sistema de Administración Tributaria SAT de México
+	 * @param keypkcs8 contenido de la llave o .key
+	 * @param certx509 contenido del certificado
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo JKS, si es nula se usa oldPassword
+	 * @return byte[] con el contenido del JKS
 	 */
-    private static X509Certificate loadCertificate(File certFile) {
-        FileInputStream fis = null;
-		try {
-			fis = new FileInputStream(certFile);
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		}
-        CertificateFactory cf;
+	static byte[] createJKSwithCertAndKey(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword) {
+		return createKSWithCertAndKey(keypkcs8, certx509, oldPassword, newPassword, OutputFormat.JKS);
+	}
+	
+	/**
+	 * Convierte en memoria a un KeyStore y regresa su contenido
+	 * @return byte[] con el KeyStore o null si hubo un error
+	 */
+	private static byte[] createKSWithCertAndKey(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword, OutputFormat format) {
 		try {
-			cf = CertificateFactory.getInstance("X.509");
-	        X509Certificate certificate = (X509Certificate) cf.generateCertificate(fis);
-	        fis.close();
-	        return certificate;
-		} catch (CertificateException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
+			return FielConverter.getDefault().convert(keypkcs8, certx509, oldPassword, newPassword, format);
+		} catch (IOException | GeneralSecurityException e) {
+			reportFailure(e);
 		}
 		return null;
-    }
-    
+	}
+
 	/**
-	 * Obtiene el identificado RFC (Registro Federal del Contribuyente) de un  
-	 * certificado emitido por el SAT (Sistema de Administración Tributaria)
-	 * @param X509Certificate representación del objeto certificado para Java
-	 * @return String RFC identificador
+	 * Muestra una sola línea con la causa del error y la cuenta para el resumen de --metrics
+	 * @param e excepción de la conversión
 	 */
-    private static String getRFCFromCert(X509Certificate cert) {
-		Map<String, String> knownOids = new HashMap<String, String>();
-		knownOids.put("2.5.4.45", "uniqueIdentifier");
-		String humanReadableDN = cert.getSubjectX500Principal().getName(X500Principal.RFC2253, knownOids);
-		int idx = humanReadableDN.indexOf("uniqueIdentifier");
-		String RFC = humanReadableDN.substring(idx + 17, idx + 30);
-		return RFC;
-    }
+	private static void reportFailure(Exception e) {
+		FailureReason reason = ConversionMetrics.failure(e);
+		if (reason == FailureReason.WRONG_PASSWORD) {
+			System.out.println("Error no coincide la contraseña con la llave");
+		} else {
+			System.out.println("Error " + reason + ": " + e.getMessage());
+		}
+	}
 
 }
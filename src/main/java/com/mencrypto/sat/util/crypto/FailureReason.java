@@ -0,0 +1,59 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertificateException;
+import java.security.spec.InvalidKeySpecException;
+
+import org.bouncycastle.cert.CertIOException;
+
+/**
+ * Causa de una conversión fallida, se obtiene del tipo de excepción que lanza {@link FielConverter}
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public enum FailureReason {
+	/** La contraseña no corresponde a la llave */
+	WRONG_PASSWORD,
+	/** La llave no corresponde a la llave pública del certificado */
+	KEY_MISMATCH,
+	/** El certificado no está vigente, no lo emitió una CA de confianza o está revocado */
+	INVALID_CERTIFICATE,
+	/** La llave o el certificado no tienen un DER válido */
+	BAD_DER,
+	/** No se pudo leer o escribir un archivo o flujo */
+	IO,
+	/** No se pudo crear, cifrar o guardar el KeyStore */
+	KEYSTORE,
+	/** Al par le falta la llave, el certificado o la contraseña, o hubo un error no esperado */
+	OTHER;
+
+	/**
+	 * @param error excepción de la conversión
+	 * @return FailureReason correspondiente
+	 */
+	public static FailureReason of(Throwable error) {
+		if (error instanceof UnrecoverableKeyException) {
+			return WRONG_PASSWORD;
+		}
+		if (error instanceof KeyMismatchException) {
+			return KEY_MISMATCH;
+		}
+		if (error instanceof CertPathValidatorException) {
+			return INVALID_CERTIFICATE;
+		}
+		if (error instanceof InvalidKeySpecException || error instanceof CertificateException || error instanceof CertIOException) {
+			return BAD_DER;
+		}
+		if (error instanceof IOException) {
+			return IO;
+		}
+		if (error instanceof GeneralSecurityException) {
+			return KEYSTORE;
+		}
+		return OTHER;
+	}
+}
@@ -0,0 +1,620 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.pkcs.EncryptedPrivateKeyInfo;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.openssl.jcajce.JceOpenSSLPKCS8DecryptorProviderBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.pkcs.PKCS8EncryptedPrivateKeyInfo;
+import org.bouncycastle.pkcs.PKCSException;
+import org.bouncycastle.util.io.pem.PemObject;
+
+import com.mencrypto.sat.util.crypto.ConversionMetrics.Stage;
+
+/**
+ * Motor reutilizable y seguro para hilos que convierte la FIEL del SAT.
+ * El proveedor BouncyCastle se registra una sola vez al cargar la clase, las fábricas de
+ * certificados se conservan por hilo y el convertidor de llaves y el constructor de
+ * descifradores se comparten, de modo que las conversiones no pagan el costo de preparación.
+ * A diferencia de {@link FIELConvertions}, los errores se reportan con excepciones.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class FielConverter {
+
+	/** Proveedor BouncyCastle registrado una sola vez para todo el proceso */
+	static final Provider BC_PROVIDER = registerProvider();
+
+	private static final FielConverter DEFAULT = new FielConverter();
+
+	private static final Map<String, String> KNOWN_OIDS = Map.of("2.5.4.45", "uniqueIdentifier");
+
+	private final ThreadLocal<CertificateFactory> certificateFactory = ThreadLocal.withInitial(() -> {
+		try {
+			return CertificateFactory.getInstance("X.509");
+		} catch (CertificateException e) {
+			throw new IllegalStateException("No está disponible la fábrica de certificados X.509", e);
+		}
+	});
+
+	private final JcaPEMKeyConverter keyConverter = new JcaPEMKeyConverter().setProvider(BC_PROVIDER);
+
+	private final JceOpenSSLPKCS8DecryptorProviderBuilder decryptorBuilder = new JceOpenSSLPKCS8DecryptorProviderBuilder()
+			.setProvider(BC_PROVIDER);
+
+	private final KeyCache keyCache;
+
+	/**
+	 * Crea un motor independiente, en la mayoría de los casos basta con {@link #getDefault()}
+	 */
+	public FielConverter() {
+		this(null);
+	}
+
+	/**
+	 * Crea un motor que conserva las llaves descifradas en el caché indicado, útil en servicios
+	 * que convierten o firman con las mismas FIEL una y otra vez
+	 * @param keyCache caché de llaves o null para descifrar siempre
+	 */
+	public FielConverter(KeyCache keyCache) {
+		this.keyCache = keyCache;
+	}
+
+	/**
+	 * @return KeyCache del motor o null si no tiene
+	 */
+	public KeyCache getKeyCache() {
+		return keyCache;
+	}
+
+	/**
+	 * @return FielConverter instancia compartida del proceso
+	 */
+	public static FielConverter getDefault() {
+		return DEFAULT;
+	}
+
+	private static Provider registerProvider() {
+		// Permite usar algoritmos de cifrado adicionales que no están en la implementación base de Java
+		Provider provider = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+		if (provider == null) {
+			provider = new BouncyCastleProvider();
+			Security.addProvider(provider);
+		}
+		return provider;
+	}
+
+	/**
+	 * Genera un objeto PrivateKey a partir de una llave en formato PKCS8 con contraseña
+	 * @param keypkcs8 File de la ubicación de la llave o .key
+	 * @param password Es la contraseña para la llave FIEL
+	 * @return PrivateKey representación del objeto llave para Java
+	 * @throws IOException si no se puede leer la llave
+	 * @throws UnrecoverableKeyException si la contraseña no corresponde a la llave
+	 * @throws GeneralSecurityException si la llave no tiene un formato válido
+	 */
+	public PrivateKey loadPrivateKey(File keypkcs8, char[] password) throws IOException, GeneralSecurityException {
+		byte[] derBytes = ConversionMetrics.time(Stage.READ, () -> Files.readAllBytes(keypkcs8.toPath()));
+		try {
+			return loadPrivateKey(derBytes, password);
+		} finally {
+			Arrays.fill(derBytes, (byte) 0);
+		}
+	}
+
+	/**
+	 * Genera un objeto PrivateKey a partir de los bytes DER de una llave PKCS8 con contraseña
+	 * @param derBytes contenido de la llave o .key
+	 * @param password Es la contraseña para la llave FIEL
+	 * @return PrivateKey representación del objeto llave para Java
+	 * @throws IOException si la llave descifrada no se puede convertir
+	 * @throws UnrecoverableKeyException si la contraseña no corresponde a la llave
+	 * @throws GeneralSecurityException si la llave no tiene un formato válido
+	 */
+	public PrivateKey loadPrivateKey(byte[] derBytes, char[] password) throws IOException, GeneralSecurityException {
+		return loadPrivateKey(derBytes, derBytes.length, password);
+	}
+
+	/**
+	 * La llave ocupa los primeros {@code length} bytes del arreglo, así {@link PemBundleExporter} descifra desde su búfer de entrada sin copiarlo
+	 */
+	PrivateKey loadPrivateKey(byte[] derBytes, int length, char[] password) throws IOException, GeneralSecurityException {
+		if (keyCache != null) {
+			return keyCache.get(derBytes, length, null, 0, password,
+					() -> KeyCache.loaded(decryptPrivateKey(derBytes, length, password), null)).getPrivateKey();
+		}
+		return decryptPrivateKey(derBytes, length, password);
+	}
+
+	private PrivateKey decryptPrivateKey(byte[] derBytes, int length, char[] password) throws IOException, GeneralSecurityException {
+		return ConversionMetrics.time(Stage.PRIVATE_KEY, () -> decryptPKCS8(derBytes, length, password));
+	}
+
+	private PrivateKey decryptPKCS8(byte[] derBytes, int length, char[] password) throws IOException, GeneralSecurityException {
+		PKCS8EncryptedPrivateKeyInfo encobj;
+		try {
+			encobj = new PKCS8EncryptedPrivateKeyInfo(EncryptedPrivateKeyInfo.getInstance(parseDER(derBytes, length)));
+		} catch (IOException | IllegalArgumentException e) {
+			throw new InvalidKeySpecException("La llave no es un PKCS8 cifrado válido", e);
+		}
+		try {
+			PrivateKeyInfo keyInfo = encobj.decryptPrivateKeyInfo(decryptorBuilder.build(password));
+			return keyConverter.getPrivateKey(keyInfo);
+		} catch (PKCSException e) {
+			UnrecoverableKeyException wrongPassword = new UnrecoverableKeyException("Error no coincide la contraseña con la llave");
+			wrongPassword.initCause(e);
+			throw wrongPassword;
+		} catch (OperatorCreationException e) {
+			throw new GeneralSecurityException("No se pudo crear el descifrador de la llave", e);
+		}
+	}
+
+	/**
+	 * Genera un objeto X509Certificate a partir de una certificado en formato DER
+	 * @param certFile File de la ubicación del certificado
+	 * @return X509Certificate representación del objeto certificado para Java
+	 * @throws IOException si no se puede leer el certificado
+	 * @throws CertificateException si el certificado no tiene un formato válido
+	 */
+	public X509Certificate loadCertificate(File certFile) throws IOException, CertificateException {
+		try (InputStream in = new FileInputStream(certFile)) {
+			return loadCertificate(in);
+		}
+	}
+
+	/**
+	 * Genera un objeto X509Certificate a partir de un flujo con el certificado en formato DER
+	 * @param in flujo del certificado, no se cierra
+	 * @return X509Certificate representación del objeto certificado para Java
+	 * @throws CertificateException si el certificado no tiene un formato válido
+	 */
+	public X509Certificate loadCertificate(InputStream in) throws CertificateException {
+		ConversionMetrics.Timer timer = ConversionMetrics.start(Stage.CERTIFICATE);
+		try {
+			X509Certificate cert = (X509Certificate) certificateFactory.get().generateCertificate(in);
+			timer.stop();
+			return cert;
+		} catch (CertificateException | RuntimeException e) {
+			timer.finish(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Genera un objeto X509Certificate a partir de los bytes DER del certificado
+	 * @param derBytes contenido del certificado o .cer
+	 * @return X509Certificate representación del objeto certificado para Java
+	 * @throws CertificateException si el certificado no tiene un formato válido
+	 */
+	public X509Certificate loadCertificate(byte[] derBytes) throws CertificateException {
+		return loadCertificate(new ByteArrayInputStream(derBytes));
+	}
+
+	/**
+	 * Lee el objeto ASN.1 de los primeros {@code length} bytes sin copiar el arreglo
+	 * @throws IOException si el contenido no es DER válido o está vacío
+	 */
+	private static ASN1Primitive parseDER(byte[] der, int length) throws IOException {
+		try (ASN1InputStream in = new ASN1InputStream(new ByteArrayInputStream(der, 0, length), length)) {
+			ASN1Primitive primitive = in.readObject();
+			if (primitive == null) {
+				throw new IOException("El contenido está vacío");
+			}
+			return primitive;
+		}
+	}
+
+	/**
+	 * Obtiene el identificado RFC (Registro Federal del Contribuyente) de un
+	 * certificado emitido por el SAT (Sistema de Administración Tributaria)
+	 * @param cert representación del objeto certificado para Java
+	 * @return String RFC identificador
+	 */
+	public String getRFC(X509Certificate cert) {
+		String humanReadableDN = cert.getSubjectX500Principal().getName(X500Principal.RFC2253, KNOWN_OIDS);
+		int idx = humanReadableDN.indexOf("uniqueIdentifier");
+		return humanReadableDN.substring(idx + 17, idx + 30);
+	}
+
+	/**
+	 * Crea un KeyStore en memoria con una sola entrada con la llave y el certificado, cuyo alias es el RFC
+	 * @param privateKey llave privada de la FIEL
+	 * @param cert certificado de la FIEL
+	 * @param password contraseña de la entrada
+	 * @param format P12 o JKS
+	 * @return KeyStore cargado con la entrada
+	 * @throws GeneralSecurityException si no se puede crear el KeyStore
+	 * @throws IOException si no se puede inicializar el KeyStore
+	 */
+	public KeyStore createKeyStore(PrivateKey privateKey, X509Certificate cert, char[] password, OutputFormat format)
+			throws GeneralSecurityException, IOException {
+		return ConversionMetrics.time(Stage.KEYSTORE, () -> {
+			KeyStore keyStore = newKeyStore(format);
+			keyStore.load(null, null);
+			keyStore.setKeyEntry(getRFC(cert), privateKey, password, new java.security.cert.Certificate[] { cert });
+			return keyStore;
+		});
+	}
+
+	/**
+	 * Escribe un PKCS12 con una sola entrada cuyo alias es el RFC, protegido con el perfil indicado
+	 * @param privateKey llave privada de la FIEL
+	 * @param cert certificado de la FIEL
+	 * @param password contraseña del archivo y de la entrada
+	 * @param profile perfil de protección
+	 * @param out flujo donde se escribe el PKCS12, no se cierra
+	 * @throws IOException si no se puede escribir en el flujo
+	 * @throws GeneralSecurityException si no se puede cifrar la entrada
+	 */
+	public void storePkcs12(PrivateKey privateKey, X509Certificate cert, char[] password, ProtectionProfile profile,
+			OutputStream out) throws IOException, GeneralSecurityException {
+		ConversionMetrics.time(Stage.STORE, () -> {
+			Pkcs12Writer.write(getRFC(cert), privateKey, cert, password, profile, out);
+			return null;
+		});
+	}
+
+	/**
+	 * Crea una instancia vacía sin cargar del tipo de KeyStore indicado, el PKCS12 se obtiene
+	 * directamente del proveedor BouncyCastle sin buscarlo por nombre
+	 * @param format P12 o JKS
+	 * @return KeyStore sin cargar
+	 * @throws GeneralSecurityException si el tipo no está disponible
+	 */
+	KeyStore newKeyStore(OutputFormat format) throws GeneralSecurityException {
+		switch (format) {
+		case P12:
+			return KeyStore.getInstance("PKCS12", BC_PROVIDER);
+		case JKS:
+			return KeyStore.getInstance("JKS");
+		default:
+			throw new IllegalArgumentException("El formato " + format + " no es un KeyStore");
+		}
+	}
+
+	/**
+	 * Convierte una llave en formato pkcs8 con contraseña y su certificado en formato der
+	 * a un KeyStore y lo escribe en la misma ruta en que se encuentre el certificado.
+	 * El archivo solo se crea cuando la llave se descifró y el KeyStore se armó correctamente.
+	 * @param keypkcs8 File de la ubicación de la llave o .key
+	 * @param certx509 File de la ubicación del certificado
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo KeyStore, si es nula se usa oldPassword
+	 * @param format P12 o JKS
+	 * @return String con la ruta en la que se escribió el KeyStore
+	 * @throws IOException si no se pueden leer las entradas o escribir la salida
+	 * @throws GeneralSecurityException si la llave, el certificado o el KeyStore no son válidos
+	 */
+	public String writeKeyStore(File keypkcs8, File certx509, char[] oldPassword, char[] newPassword, OutputFormat format)
+			throws IOException, GeneralSecurityException {
+		return writeKeyStore(keypkcs8, certx509, oldPassword, newPassword, format, ProtectionProfile.bcDefault());
+	}
+
+	/**
+	 * Igual que {@link #writeKeyStore(File, File, char[], char[], OutputFormat)} pero el PKCS12 se protege
+	 * con el perfil indicado, el perfil no aplica a JKS
+	 * @param keypkcs8 File de la ubicación de la llave o .key
+	 * @param certx509 File de la ubicación del certificado
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo KeyStore, si es nula se usa oldPassword
+	 * @param format P12 o JKS
+	 * @param profile perfil de protección del PKCS12
+	 * @return String con la ruta en la que se escribió el KeyStore
+	 * @throws IOException si no se pueden leer las entradas o escribir la salida
+	 * @throws GeneralSecurityException si la llave, el certificado o el KeyStore no son válidos
+	 */
+	public String writeKeyStore(File keypkcs8, File certx509, char[] oldPassword, char[] newPassword, OutputFormat format,
+			ProtectionProfile profile) throws IOException, GeneralSecurityException {
+		String outputhPath = outputPath(certx509, format.getExtension());
+		ByteArrayOutputStream content = new ByteArrayOutputStream(4096);
+		byte[] key = ConversionMetrics.time(Stage.READ, () -> Files.readAllBytes(keypkcs8.toPath()));
+		try {
+			byte[] cer = ConversionMetrics.time(Stage.READ, () -> Files.readAllBytes(certx509.toPath()));
+			convert(key, cer, oldPassword, newPassword, format, profile, content);
+		} finally {
+			Arrays.fill(key, (byte) 0);
+		}
+		ConversionMetrics.time(Stage.WRITE, () -> {
+			try (OutputStream out = Files.newOutputStream(Path.of(outputhPath))) {
+				content.writeTo(out);
+			}
+			return null;
+		});
+		return outputhPath;
+	}
+
+	/**
+	 * Convierte en memoria la llave y el certificado al formato indicado sin tocar el disco
+	 * @param keypkcs8 contenido de la llave o .key
+	 * @param certx509 contenido del certificado o .cer
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo KeyStore, si es nula se usa oldPassword
+	 * @param format P12, JKS o PEM
+	 * @return byte[] con el KeyStore o con la llave y el certificado en PEM
+	 * @throws IOException si la salida no se puede generar
+	 * @throws GeneralSecurityException si la llave, el certificado o el KeyStore no son válidos
+	 */
+	public byte[] convert(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword, OutputFormat format)
+			throws IOException, GeneralSecurityException {
+		return convert(keypkcs8, certx509, oldPassword, newPassword, format, ProtectionProfile.bcDefault());
+	}
+
+	/**
+	 * Convierte en memoria con el perfil de protección indicado para el PKCS12
+	 * @param keypkcs8 contenido de la llave o .key
+	 * @param certx509 contenido del certificado o .cer
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo KeyStore, si es nula se usa oldPassword
+	 * @param format P12, JKS o PEM
+	 * @param profile perfil de protección del PKCS12
+	 * @return byte[] con el KeyStore o con la llave y el certificado en PEM
+	 * @throws IOException si la salida no se puede generar
+	 * @throws GeneralSecurityException si la llave, el certificado o el KeyStore no son válidos
+	 */
+	public byte[] convert(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword, OutputFormat format,
+			ProtectionProfile profile) throws IOException, GeneralSecurityException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+		convert(keypkcs8, certx509, oldPassword, newPassword, format, profile, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Convierte la llave y el certificado al formato indicado y escribe el resultado en el flujo
+	 * del llamador, el flujo no se cierra y no se escribe nada si la conversión falla
+	 * @param keypkcs8 contenido de la llave o .key
+	 * @param certx509 contenido del certificado o .cer
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo KeyStore, si es nula se usa oldPassword
+	 * @param format P12, JKS o PEM
+	 * @param out flujo donde se escribe el resultado
+	 * @throws IOException si no se puede escribir en el flujo
+	 * @throws GeneralSecurityException si la llave, el certificado o el KeyStore no son válidos
+	 */
+	public void convert(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword, OutputFormat format,
+			OutputStream out) throws IOException, GeneralSecurityException {
+		convert(keypkcs8, certx509, oldPassword, newPassword, format, ProtectionProfile.bcDefault(), out);
+	}
+
+	/**
+	 * Convierte la llave y el certificado al formato indicado con el perfil de protección indicado
+	 * para el PKCS12 y escribe el resultado en el flujo del llamador, el flujo no se cierra
+	 * @param keypkcs8 contenido de la llave o .key
+	 * @param certx509 contenido del certificado o .cer
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo KeyStore, si es nula se usa oldPassword
+	 * @param format P12, JKS o PEM
+	 * @param profile perfil de protección del PKCS12, no aplica a JKS ni a PEM
+	 * @param out flujo donde se escribe el resultado
+	 * @throws IOException si no se puede escribir en el flujo
+	 * @throws GeneralSecurityException si la llave, el certificado o el KeyStore no son válidos
+	 */
+	public void convert(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword, OutputFormat format,
+			ProtectionProfile profile, OutputStream out) throws IOException, GeneralSecurityException {
+		ConversionMetrics.time(Stage.CONVERSION, () -> {
+			convertStages(keypkcs8, certx509, oldPassword, newPassword, format, profile, out);
+			return null;
+		});
+	}
+
+	/**
+	 * Etapas de la conversión, cada una se mide por separado
+	 */
+	private void convertStages(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword, OutputFormat format,
+			ProtectionProfile profile, OutputStream out) throws IOException, GeneralSecurityException {
+		X509Certificate cert;
+		PrivateKey privateKey;
+		if (keyCache != null) {
+			KeyCache.Entry pair = keyCache.get(keypkcs8, certx509, oldPassword,
+					() -> KeyCache.loaded(decryptPrivateKey(keypkcs8, keypkcs8.length, oldPassword), loadCertificate(certx509)));
+			cert = pair.getCertificate();
+			privateKey = pair.getPrivateKey();
+		} else {
+			cert = loadCertificate(certx509);
+			privateKey = loadPrivateKey(keypkcs8, oldPassword);
+		}
+		checkKeyMatches(privateKey, cert.getPublicKey());
+		if (format == OutputFormat.PEM) {
+			// El certificado ya se analizó con la fábrica, así un DER inválido se reporta igual en todos los formatos
+			X509CertificateHolder certHolder = new JcaX509CertificateHolder(cert);
+			ConversionMetrics.time(Stage.PEM, () -> {
+				JcaPEMWriter pemWriter = new JcaPEMWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII));
+				writePrivateKey(pemWriter, privateKey);
+				pemWriter.writeObject(certHolder.getSubjectPublicKeyInfo());
+				pemWriter.writeObject(certHolder);
+				pemWriter.flush();
+				return null;
+			});
+			return;
+		}
+		char[] password = (newPassword == null) ? oldPassword : newPassword;
+		if (format == OutputFormat.P12) {
+			storePkcs12(privateKey, cert, password, profile, out);
+		} else {
+			KeyStore keyStore = createKeyStore(privateKey, cert, password, format);
+			ConversionMetrics.time(Stage.STORE, () -> {
+				keyStore.store(out, password);
+				return null;
+			});
+		}
+		out.flush();
+	}
+
+	/**
+	 * Convierte la llave y el certificado leídos de flujos y escribe el resultado en el flujo del llamador
+	 * @param keypkcs8 flujo de la llave o .key, se lee completo y no se cierra
+	 * @param certx509 flujo del certificado o .cer, se lee completo y no se cierra
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo KeyStore, si es nula se usa oldPassword
+	 * @param format P12, JKS o PEM
+	 * @param out flujo donde se escribe el resultado
+	 * @throws IOException si no se pueden leer las entradas o escribir la salida
+	 * @throws GeneralSecurityException si la llave, el certificado o el KeyStore no son válidos
+	 */
+	public void convert(InputStream keypkcs8, InputStream certx509, char[] oldPassword, char[] newPassword,
+			OutputFormat format, OutputStream out) throws IOException, GeneralSecurityException {
+		convert(keypkcs8.readAllBytes(), certx509.readAllBytes(), oldPassword, newPassword, format, out);
+	}
+
+	/**
+	 * Convierte la llave y el certificado y escribe el resultado en el canal del llamador,
+	 * útil para regresar el KeyStore directamente en la respuesta de un servidor
+	 * @param keypkcs8 contenido de la llave o .key
+	 * @param certx509 contenido del certificado o .cer
+	 * @param oldPassword Es la contraseña para la llave FIEL
+	 * @param newPassword Es la contraseña para el nuevo KeyStore, si es nula se usa oldPassword
+	 * @param format P12, JKS o PEM
+	 * @param channel canal donde se escribe el resultado, no se cierra
+	 * @throws IOException si no se puede escribir en el canal
+	 * @throws GeneralSecurityException si la llave, el certificado o el KeyStore no son válidos
+	 */
+	public void convert(byte[] keypkcs8, byte[] certx509, char[] oldPassword, char[] newPassword, OutputFormat format,
+			WritableByteChannel channel) throws IOException, GeneralSecurityException {
+		convert(keypkcs8, certx509, oldPassword, newPassword, format, Channels.newOutputStream(channel));
+	}
+
+	/**
+	 * Convierte una llave en formato pkcs8 con contraseña a PEM sin contraseña
+	 * y la escribe en la misma ruta en que se encuentre el archivo original
+	 * @param keypkcs8 File de la ubicación de la llave o .key
+	 * @param password Es la contraseña para la llave FIEL
+	 * @return String con la ruta en la que se escribió el archivo .pem
+	 * @throws IOException si no se puede leer la llave o escribir la salida
+	 * @throws GeneralSecurityException si la llave no es válida o la contraseña no corresponde
+	 */
+	public String writeKeyPEM(File keypkcs8, char[] password) throws IOException, GeneralSecurityException {
+		return writeKeyPEM(keypkcs8, loadPrivateKey(keypkcs8, password));
+	}
+
+	private String writeKeyPEM(File keypkcs8, PrivateKey privateKey) throws IOException, GeneralSecurityException {
+		String outputhPath = outputPath(keypkcs8, ".pem");
+		// Cambiar de llave RSA a PEM sin contraseña
+		ConversionMetrics.time(Stage.PEM, () -> {
+			try (JcaPEMWriter pemWriter = new JcaPEMWriter(Files.newBufferedWriter(Path.of(outputhPath), StandardCharsets.US_ASCII))) {
+				writePrivateKey(pemWriter, privateKey);
+			}
+			return null;
+		});
+		return outputhPath;
+	}
+
+	/**
+	 * Escribe la llave y el certificado en PEM junto a los originales como {@link #writeKeyPEM(File, char[])}
+	 * y {@link #writeCertificatePEM(File)}, antes de escribir comprueba que la llave corresponde al certificado
+	 * @param keypkcs8 File de la ubicación de la llave o .key
+	 * @param certx509 File de la ubicación del certificado
+	 * @param password Es la contraseña para la llave FIEL
+	 * @return String[] con la ruta del PEM de la llave y la del PEM del certificado
+	 * @throws IOException si no se pueden leer las entradas o escribir la salida
+	 * @throws KeyMismatchException si la llave no corresponde al certificado
+	 * @throws GeneralSecurityException si la llave o el certificado no son válidos
+	 */
+	public String[] writePEM(File keypkcs8, File certx509, char[] password) throws IOException, GeneralSecurityException {
+		X509Certificate cert = loadCertificate(certx509);
+		PrivateKey privateKey = loadPrivateKey(keypkcs8, password);
+		checkKeyMatches(privateKey, cert.getPublicKey());
+		return new String[] { writeKeyPEM(keypkcs8, privateKey), writeCertificatePEM(certx509) };
+	}
+
+	/**
+	 * Convierte un certificado en formato der a formato pem que incluye la llave pública
+	 * y el certificado y la escribe en la misma ruta en que se encuentre el archivo original
+	 * @param certx509 File de la ubicación del certificado
+	 * @return String con la ruta en la que se escribió el archivo .pem
+	 * @throws IOException si no se puede leer el certificado o escribir la salida
+	 */
+	public String writeCertificatePEM(File certx509) throws IOException {
+		String outputhPath = outputPath(certx509, "_CER.pem");
+		ConversionMetrics.Timer timer = ConversionMetrics.start(Stage.PEM);
+		try {
+			X509CertificateHolder certHolder = new X509CertificateHolder(Files.readAllBytes(certx509.toPath()));
+			// Escribe la llave pública y el certificado en formato PEM que de otra forma certHolder solo escribe el certificado
+			try (JcaPEMWriter pemWriter = new JcaPEMWriter(Files.newBufferedWriter(Path.of(outputhPath), StandardCharsets.US_ASCII))) {
+				pemWriter.writeObject(certHolder.getSubjectPublicKeyInfo());
+				pemWriter.writeObject(certHolder);
+			}
+			timer.stop();
+			return outputhPath;
+		} catch (IOException | RuntimeException e) {
+			timer.finish(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Escribe la llave sin cifrar como PKCS8 PEM y limpia la copia de su codificación
+	 */
+	private static void writePrivateKey(JcaPEMWriter pemWriter, PrivateKey privateKey) throws IOException {
+		byte[] encoded = privateKey.getEncoded();
+		try {
+			pemWriter.writeObject(new PemObject("PRIVATE KEY", encoded));
+		} finally {
+			Arrays.fill(encoded, (byte) 0);
+		}
+	}
+
+	/**
+	 * Comprueba que la llave privada corresponde a la llave pública del certificado, en RSA corresponden si tienen
+	 * el mismo módulo y exponente público, que son el contenido del SubjectPublicKeyInfo
+	 * @param privateKey llave privada descifrada
+	 * @param publicKey llave pública del certificado
+	 * @throws KeyMismatchException si no corresponden
+	 */
+	static void checkKeyMatches(PrivateKey privateKey, PublicKey publicKey) throws KeyMismatchException {
+		// La FIEL del SAT siempre es RSA
+		boolean matches = privateKey instanceof RSAPrivateKey && publicKey instanceof RSAPublicKey
+				&& ((RSAPrivateKey) privateKey).getModulus().equals(((RSAPublicKey) publicKey).getModulus())
+				&& (!(privateKey instanceof RSAPrivateCrtKey)
+						|| ((RSAPrivateCrtKey) privateKey).getPublicExponent().equals(((RSAPublicKey) publicKey).getPublicExponent()));
+		if (!matches) {
+			throw new KeyMismatchException("La llave no corresponde a la llave pública del certificado");
+		}
+	}
+
+	/**
+	 * Ruta de salida junto al archivo original remplazando su extensión
+	 */
+	static String outputPath(File input, String suffix) {
+		String path = input.getAbsolutePath();
+		int idx = path.lastIndexOf(".");
+		return ((idx < 0) ? path : path.substring(0, idx)) + suffix;
+	}
+}
@@ -0,0 +1,436 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Índice persistente de los certificados de una bóveda de FIEL.
+ * Cada .cer se lee una sola vez para obtener RFC, número de serie, vigencia y huella de la llave
+ * pública, y el resultado se guarda en un archivo binario compacto. En los recorridos siguientes
+ * solo se vuelven a leer los archivos cuyo tamaño o fecha de modificación cambió.
+ * A cada certificado se le asocia la llave .key de su misma carpeta, si es la única, o la que
+ * tiene el mismo nombre base.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class FielIndex {
+
+	/** Nombre del archivo de índice que se guarda en la raíz de la bóveda */
+	public static final String DEFAULT_INDEX_NAME = ".fielindex";
+
+	/** La versión 2 guarda también la llave asociada, un índice de la versión 1 se reconstruye */
+	private static final int MAGIC = 0x46495832; // FIX2
+
+	private final Path vault;
+	private final Path indexFile;
+	private final int maxDepth;
+	private Map<Path, Entry> entries = new TreeMap<>();
+	private int parsed;
+	private int loaded;
+
+	/**
+	 * Certificado indexado
+	 */
+	public static final class Entry {
+		private final Path cer;
+		private final long size;
+		private final long modified;
+		private final String rfc;
+		private final String serial;
+		private final long notBefore;
+		private final long notAfter;
+		private final String fingerprint;
+		private Path key;
+
+		Entry(Path cer, long size, long modified, String rfc, String serial, long notBefore, long notAfter,
+				String fingerprint, Path key) {
+			this.cer = cer;
+			this.size = size;
+			this.modified = modified;
+			this.rfc = rfc;
+			this.serial = serial;
+			this.notBefore = notBefore;
+			this.notAfter = notAfter;
+			this.fingerprint = fingerprint;
+			this.key = key;
+		}
+
+		public Path getCer() {
+			return cer;
+		}
+
+		/**
+		 * @return Path de la llave asociada o null si no se encontró
+		 */
+		public Path getKey() {
+			return key;
+		}
+
+		public String getRfc() {
+			return rfc;
+		}
+
+		/**
+		 * @return String número de serie en hexadecimal
+		 */
+		public String getSerial() {
+			return serial;
+		}
+
+		/**
+		 * El SAT publica el número de certificado como los dígitos ASCII que forman el número de serie
+		 * @return String número de certificado del SAT o el número de serie en hexadecimal si no tiene esa forma
+		 */
+		public String getCertificateNumber() {
+			if (serial.length() % 2 != 0) {
+				return serial;
+			}
+			StringBuilder sb = new StringBuilder(serial.length() / 2);
+			for (int i = 0; i < serial.length(); i += 2) {
+				int c = Integer.parseInt(serial.substring(i, i + 2), 16);
+				if (c < '0' || c > '9') {
+					return serial;
+				}
+				sb.append((char) c);
+			}
+			return sb.toString();
+		}
+
+		public long getNotBefore() {
+			return notBefore;
+		}
+
+		public long getNotAfter() {
+			return notAfter;
+		}
+
+		/**
+		 * @return String huella SHA-256 en hexadecimal de la llave pública
+		 */
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+		/**
+		 * @return boolean true si el certificado se pudo leer
+		 */
+		public boolean isValid() {
+			return !rfc.isEmpty();
+		}
+
+		/**
+		 * @param now instante de referencia en milisegundos
+		 * @return boolean true si el certificado está vigente en el instante indicado
+		 */
+		public boolean isCurrent(long now) {
+			return isValid() && notBefore <= now && now <= notAfter;
+		}
+
+		@Override
+		public String toString() {
+			return rfc + " " + getCertificateNumber() + " vence " + new java.util.Date(notAfter) + " " + cer
+					+ ((key == null) ? " sin llave" : " " + key);
+		}
+	}
+
+	/**
+	 * @param vault directorio raíz de la bóveda
+	 * @param indexFile archivo donde se guarda el índice, si es nulo no se guarda
+	 * @param maxDepth profundidad máxima del recorrido
+	 */
+	public FielIndex(Path vault, Path indexFile, int maxDepth) {
+		this.vault = vault.toAbsolutePath().normalize();
+		this.indexFile = indexFile;
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Abre el índice de una bóveda guardado en su raíz y lo actualiza
+	 * @param vault directorio raíz de la bóveda
+	 * @return FielIndex actualizado
+	 * @throws IOException si no se puede recorrer la bóveda o escribir el índice
+	 */
+	public static FielIndex open(Path vault) throws IOException {
+		FielIndex index = new FielIndex(vault, vault.resolve(DEFAULT_INDEX_NAME), Integer.MAX_VALUE);
+		index.load();
+		index.scan();
+		index.save();
+		return index;
+	}
+
+	/**
+	 * Carga el índice guardado sin recorrer la bóveda, las entradas reflejan la bóveda al momento del último
+	 * {@link #save()}; si no existe o está dañado se empieza vacío
+	 * @return int número de certificados cargados, 0 si no hay índice guardado o -1 si estaba dañado
+	 */
+	public int load() {
+		loaded = 0;
+		if (indexFile == null || !Files.isRegularFile(indexFile)) {
+			return loaded;
+		}
+		Map<Path, Entry> read = new TreeMap<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC) {
+				loaded = -1;
+				return loaded;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				Path cer = Path.of(in.readUTF());
+				long size = in.readLong();
+				long modified = in.readLong();
+				String rfc = in.readUTF();
+				String serial = in.readUTF();
+				long notBefore = in.readLong();
+				long notAfter = in.readLong();
+				String fingerprint = in.readUTF();
+				String key = in.readUTF();
+				read.put(cer, new Entry(cer, size, modified, rfc, serial, notBefore, notAfter, fingerprint,
+						key.isEmpty() ? null : Path.of(key)));
+			}
+			entries = read;
+			loaded = read.size();
+		} catch (IOException e) {
+			loaded = -1;
+		}
+		return loaded;
+	}
+
+	/**
+	 * Recorre la bóveda, lee solo los .cer nuevos o modificados y vuelve a asociar las llaves
+	 * @throws IOException si no se puede recorrer la bóveda
+	 */
+	public void scan() throws IOException {
+		Map<Path, Entry> previous = entries;
+		Map<Path, Entry> current = new TreeMap<>();
+		Map<Path, List<Path>> keysByDir = new HashMap<>();
+		parsed = 0;
+		Files.walkFileTree(vault, Collections.emptySet(), maxDepth, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				String name = file.getFileName().toString().toLowerCase();
+				if (name.endsWith(".key")) {
+					keysByDir.computeIfAbsent(file.getParent(), k -> new ArrayList<>()).add(file);
+				} else if (name.endsWith(".cer")) {
+					long modified = attrs.lastModifiedTime().toMillis();
+					Entry old = previous.get(file);
+					if (old != null && old.size == attrs.size() && old.modified == modified) {
+						current.put(file, old);
+					} else {
+						current.put(file, parse(file, attrs.size(), modified));
+						parsed++;
+					}
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) {
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Map<Path, List<Entry>> cersByDir = current.values().stream().collect(Collectors.groupingBy(e -> e.cer.getParent()));
+		for (Map.Entry<Path, List<Entry>> dir : cersByDir.entrySet()) {
+			List<Path> keys = keysByDir.getOrDefault(dir.getKey(), Collections.emptyList());
+			for (Entry entry : dir.getValue()) {
+				entry.key = (keys.size() == 1 && dir.getValue().size() == 1) ? keys.get(0) : sameBaseName(keys, entry.cer);
+			}
+		}
+		entries = current;
+	}
+
+	private static Path sameBaseName(List<Path> keys, Path cer) {
+		String base = baseName(cer);
+		for (Path key : keys) {
+			if (baseName(key).equals(base)) {
+				return key;
+			}
+		}
+		return null;
+	}
+
+	private static String baseName(Path file) {
+		String name = file.getFileName().toString();
+		int idx = name.lastIndexOf('.');
+		return (idx < 0) ? name : name.substring(0, idx);
+	}
+
+	/**
+	 * Lee un certificado, si no es válido se registra con RFC vacío para no volver a leerlo
+	 * mientras no cambie
+	 */
+	private static Entry parse(Path cer, long size, long modified) {
+		try {
+			FielConverter converter = FielConverter.getDefault();
+			X509Certificate cert = converter.loadCertificate(cer.toFile());
+			return new Entry(cer, size, modified, converter.getRFC(cert).trim(), cert.getSerialNumber().toString(16),
+					cert.getNotBefore().getTime(), cert.getNotAfter().getTime(), fingerprint(cert), null);
+		} catch (Exception e) {
+			return new Entry(cer, size, modified, "", "", 0, 0, "", null);
+		}
+	}
+
+	/**
+	 * Huella SHA-256 de la llave pública del certificado en hexadecimal
+	 * @param cert certificado
+	 * @return String huella en hexadecimal en minúsculas
+	 * @throws NoSuchAlgorithmException si SHA-256 no está disponible
+	 */
+	static String fingerprint(X509Certificate cert) throws NoSuchAlgorithmException {
+		byte[] digest = MessageDigest.getInstance("SHA-256").digest(cert.getPublicKey().getEncoded());
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Guarda el índice de forma atómica escribiendo un temporal y renombrándolo
+	 * @throws IOException si no se puede escribir
+	 */
+	public void save() throws IOException {
+		if (indexFile == null) {
+			return;
+		}
+		Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(entries.size());
+			for (Entry entry : entries.values()) {
+				out.writeUTF(entry.cer.toString());
+				out.writeLong(entry.size);
+				out.writeLong(entry.modified);
+				out.writeUTF(entry.rfc);
+				out.writeUTF(entry.serial);
+				out.writeLong(entry.notBefore);
+				out.writeLong(entry.notAfter);
+				out.writeUTF(entry.fingerprint);
+				out.writeUTF((entry.key == null) ? "" : entry.key.toString());
+			}
+		}
+		moveAtomically(temp, indexFile);
+	}
+
+	/**
+	 * Renombra el temporal sobre el destino, de forma atómica si el sistema de archivos lo permite
+	 * @param temp archivo temporal en el mismo directorio que el destino
+	 * @param target archivo destino
+	 * @throws IOException si no se puede renombrar
+	 */
+	static void moveAtomically(Path temp, Path target) throws IOException {
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * @return Collection con todos los certificados indexados ordenados por ruta
+	 */
+	public Collection<Entry> all() {
+		return Collections.unmodifiableCollection(entries.values());
+	}
+
+	/**
+	 * @return int número de certificados cargados del índice guardado, -1 si estaba dañado y se reconstruyó
+	 */
+	public int getLoadedCount() {
+		return loaded;
+	}
+
+	/**
+	 * @return int número de certificados que se leyeron en el último recorrido
+	 */
+	public int getParsedCount() {
+		return parsed;
+	}
+
+	/**
+	 * @param rfc RFC sin importar mayúsculas
+	 * @return List con los certificados del RFC, el de vencimiento más lejano primero
+	 */
+	public List<Entry> findByRfc(String rfc) {
+		String wanted = rfc.trim().toUpperCase();
+		return entries.values().stream()
+				.filter(e -> e.isValid() && e.rfc.equalsIgnoreCase(wanted))
+				.sorted(Comparator.comparingLong(Entry::getNotAfter).reversed())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @param serial número de serie en hexadecimal o número de certificado del SAT
+	 * @return Optional con el certificado encontrado
+	 */
+	public Optional<Entry> findBySerial(String serial) {
+		String wanted = serial.trim();
+		return entries.values().stream()
+				.filter(e -> e.isValid() && (e.serial.equalsIgnoreCase(wanted) || e.getCertificateNumber().equals(wanted)))
+				.findFirst();
+	}
+
+	/**
+	 * @param limit instante límite en milisegundos
+	 * @return List con los certificados vigentes hoy que vencen antes del límite, el más próximo primero
+	 */
+	public List<Entry> expiringBefore(long limit) {
+		return expiringBefore(System.currentTimeMillis(), limit);
+	}
+
+	/**
+	 * @param now instante de referencia en milisegundos, los certificados vencidos antes de este instante no se incluyen
+	 * @param limit instante límite en milisegundos
+	 * @return List con los certificados que vencen entre los dos instantes, el más próximo primero
+	 */
+	public List<Entry> expiringBefore(long now, long limit) {
+		return entries.values().stream()
+				.filter(e -> e.isValid() && e.notAfter >= now && e.notAfter < limit)
+				.sorted(Comparator.comparingLong(Entry::getNotAfter))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Elige el par más adecuado cuando no se indica cuál: el certificado vigente con llave asociada
+	 * de vencimiento más lejano. Si ninguno está vigente se elige el de vencimiento más lejano que tenga
+	 * llave, como la búsqueda original del primer .key y .cer, para que la conversión reporte el problema
+	 * @param now instante de referencia en milisegundos
+	 * @return Optional con el par elegido
+	 */
+	public Optional<Entry> bestPair(long now) {
+		Comparator<Entry> byNotAfter = Comparator.comparingLong(Entry::getNotAfter);
+		Optional<Entry> current = entries.values().stream()
+				.filter(e -> e.key != null && e.isCurrent(now))
+				.max(byNotAfter);
+		if (current.isPresent()) {
+			return current;
+		}
+		return entries.values().stream()
+				.filter(e -> e.key != null)
+				.max(byNotAfter);
+	}
+}
@@ -0,0 +1,355 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.KeyStoreSpi;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * KeyStore de solo lectura de tipo "FIEL" sobre un directorio con pares .cer y .key.
+ * Los alias son los RFC que reporta {@link FielIndex}, el certificado se lee hasta que se pide
+ * y la llave se descifra solo en la primera llamada a {@link #engineGetKey(String, char[])}.
+ * Certificados y llaves se guardan en un caché acotado, así el costo de cargar el KeyStore
+ * depende del índice y no del número de FIEL de la bóveda.
+ * <p>
+ * La carga solo lee el índice guardado en la bóveda ({@link FielIndex#DEFAULT_INDEX_NAME}) y nunca
+ * escribe en ella. Los alias reflejan la bóveda al momento en que se guardó el índice: un certificado
+ * agregado después no aparece hasta que se actualiza el índice con {@link FielIndex#open(Path)}
+ * (por ejemplo con {@code -list -vault}), y un certificado que se reemplazó o eliminó se detecta al
+ * pedir su alias, que regresa null. Si la bóveda no tiene índice o está dañado se recorre completa
+ * en memoria en cada carga, sin guardar el resultado.
+ * <pre>
+ * Security.addProvider(new FielProvider());
+ * KeyStore keyStore = KeyStore.getInstance("FIEL");
+ * keyStore.load(new FielKeyStoreSpi.VaultParameter(Path.of("boveda"), contraseña));
+ * </pre>
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class FielKeyStoreSpi extends KeyStoreSpi {
+
+	/** Entradas que se conservan en caché cuando no se indica otro valor */
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
+	/**
+	 * Parámetro de carga con el directorio de la bóveda y la contraseña de las llaves
+	 */
+	public static final class VaultParameter implements KeyStore.LoadStoreParameter {
+		private final Path directory;
+		private final KeyStore.PasswordProtection protection;
+		private final int cacheSize;
+
+		/**
+		 * @param directory directorio de la bóveda
+		 * @param password contraseña que se usa cuando getKey se llama sin contraseña, puede ser nula
+		 */
+		public VaultParameter(Path directory, char[] password) {
+			this(directory, password, DEFAULT_CACHE_SIZE);
+		}
+
+		/**
+		 * @param directory directorio de la bóveda
+		 * @param password contraseña que se usa cuando getKey se llama sin contraseña, puede ser nula
+		 * @param cacheSize número máximo de certificados y de llaves en caché
+		 */
+		public VaultParameter(Path directory, char[] password, int cacheSize) {
+			this.directory = directory;
+			this.protection = new KeyStore.PasswordProtection(password);
+			this.cacheSize = Math.max(1, cacheSize);
+		}
+
+		public Path getDirectory() {
+			return directory;
+		}
+
+		public int getCacheSize() {
+			return cacheSize;
+		}
+
+		@Override
+		public KeyStore.ProtectionParameter getProtectionParameter() {
+			return protection;
+		}
+	}
+
+	/**
+	 * Llave descifrada junto con la huella de la contraseña con la que se obtuvo
+	 */
+	private static final class CachedKey {
+		final PrivateKey key;
+		final byte[] passwordDigest;
+
+		CachedKey(PrivateKey key, byte[] passwordDigest) {
+			this.key = key;
+			this.passwordDigest = passwordDigest;
+		}
+	}
+
+	/**
+	 * Caché LRU de tamaño fijo
+	 */
+	private static final class LruCache<V> extends LinkedHashMap<String, V> {
+		private static final long serialVersionUID = 1L;
+		private final int maxEntries;
+
+		LruCache(int maxEntries) {
+			super(16, 0.75f, true);
+			this.maxEntries = maxEntries;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+			return size() > maxEntries;
+		}
+	}
+
+	private final FielConverter converter = FielConverter.getDefault();
+	private Map<String, FielIndex.Entry> entries = Collections.emptyMap();
+	private char[] defaultPassword;
+	private LruCache<X509Certificate> certificates = new LruCache<>(DEFAULT_CACHE_SIZE);
+	private LruCache<CachedKey> keys = new LruCache<>(DEFAULT_CACHE_SIZE);
+
+	@Override
+	public void engineLoad(KeyStore.LoadStoreParameter param) throws IOException, NoSuchAlgorithmException, CertificateException {
+		if (!(param instanceof VaultParameter)) {
+			throw new IllegalArgumentException("El KeyStore FIEL se carga con FielKeyStoreSpi.VaultParameter");
+		}
+		VaultParameter vault = (VaultParameter) param;
+		Path directory = vault.getDirectory();
+		if (!Files.isDirectory(directory)) {
+			throw new IOException("No existe el directorio de la bóveda: " + directory);
+		}
+		FielIndex index = new FielIndex(directory, directory.resolve(FielIndex.DEFAULT_INDEX_NAME), Integer.MAX_VALUE);
+		if (index.load() <= 0) {
+			// Sin índice guardado se recorre la bóveda en memoria, el KeyStore es de solo lectura y no lo guarda
+			index.scan();
+		}
+		long now = System.currentTimeMillis();
+		Map<String, FielIndex.Entry> byRfc = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (FielIndex.Entry entry : index.all()) {
+			if (entry.isValid()) {
+				byRfc.merge(entry.getRfc(), entry, (a, b) -> preferred(a, b, now));
+			}
+		}
+		synchronized (this) {
+			entries = byRfc;
+			defaultPassword = vault.protection.getPassword();
+			certificates = new LruCache<>(vault.getCacheSize());
+			keys = new LruCache<>(vault.getCacheSize());
+		}
+	}
+
+	/**
+	 * Entre dos certificados del mismo RFC se prefiere el vigente con llave y después el que vence al final
+	 */
+	private static FielIndex.Entry preferred(FielIndex.Entry a, FielIndex.Entry b, long now) {
+		boolean usableA = a.getKey() != null && a.isCurrent(now);
+		boolean usableB = b.getKey() != null && b.isCurrent(now);
+		if (usableA != usableB) {
+			return usableA ? a : b;
+		}
+		return (a.getNotAfter() >= b.getNotAfter()) ? a : b;
+	}
+
+	@Override
+	public void engineLoad(InputStream stream, char[] password) throws IOException, NoSuchAlgorithmException, CertificateException {
+		if (stream != null) {
+			throw new IOException("El KeyStore FIEL se carga con FielKeyStoreSpi.VaultParameter");
+		}
+		synchronized (this) {
+			entries = Collections.emptyMap();
+			defaultPassword = password;
+		}
+	}
+
+	@Override
+	public Key engineGetKey(String alias, char[] password) throws NoSuchAlgorithmException, UnrecoverableKeyException {
+		FielIndex.Entry entry = entry(alias);
+		if (entry == null || entry.getKey() == null) {
+			return null;
+		}
+		Certificate cert = engineGetCertificate(alias);
+		if (cert == null) {
+			return null;
+		}
+		char[] pwd = (password != null) ? password : defaultPassword;
+		if (pwd == null) {
+			throw new UnrecoverableKeyException("No se indicó la contraseña de la llave " + alias);
+		}
+		byte[] digest = digest(pwd);
+		String cacheKey = entry.getRfc();
+		synchronized (this) {
+			CachedKey cached = keys.get(cacheKey);
+			if (cached != null && MessageDigest.isEqual(cached.passwordDigest, digest)) {
+				return cached.key;
+			}
+		}
+		try {
+			PrivateKey key = converter.loadPrivateKey(entry.getKey().toFile(), pwd);
+			FielConverter.checkKeyMatches(key, cert.getPublicKey());
+			synchronized (this) {
+				keys.put(cacheKey, new CachedKey(key, digest));
+			}
+			return key;
+		} catch (UnrecoverableKeyException e) {
+			throw e;
+		} catch (IOException | GeneralSecurityException e) {
+			UnrecoverableKeyException error = new UnrecoverableKeyException("No se pudo leer la llave " + entry.getKey());
+			error.initCause(e);
+			throw error;
+		}
+	}
+
+	private static byte[] digest(char[] password) throws NoSuchAlgorithmException {
+		ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		md.update(bytes);
+		if (bytes.hasArray()) {
+			Arrays.fill(bytes.array(), (byte) 0);
+		}
+		return md.digest();
+	}
+
+	@Override
+	public Certificate[] engineGetCertificateChain(String alias) {
+		Certificate cert = engineGetCertificate(alias);
+		return (cert == null) ? null : new Certificate[] { cert };
+	}
+
+	@Override
+	public Certificate engineGetCertificate(String alias) {
+		FielIndex.Entry entry = entry(alias);
+		if (entry == null) {
+			return null;
+		}
+		String cacheKey = entry.getRfc();
+		synchronized (this) {
+			X509Certificate cached = certificates.get(cacheKey);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		try {
+			X509Certificate cert = converter.loadCertificate(entry.getCer().toFile());
+			if (!FielIndex.fingerprint(cert).equals(entry.getFingerprint())) {
+				// El archivo cambió después de guardar el índice, el alias ya no corresponde
+				return null;
+			}
+			synchronized (this) {
+				certificates.put(cacheKey, cert);
+			}
+			return cert;
+		} catch (IOException | CertificateException | NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public Date engineGetCreationDate(String alias) {
+		FielIndex.Entry entry = entry(alias);
+		return (entry == null) ? null : new Date(entry.getNotBefore());
+	}
+
+	@Override
+	public void engineSetKeyEntry(String alias, Key key, char[] password, Certificate[] chain) throws KeyStoreException {
+		throw new KeyStoreException("El KeyStore FIEL es de solo lectura");
+	}
+
+	@Override
+	public void engineSetKeyEntry(String alias, byte[] key, Certificate[] chain) throws KeyStoreException {
+		throw new KeyStoreException("El KeyStore FIEL es de solo lectura");
+	}
+
+	@Override
+	public void engineSetCertificateEntry(String alias, Certificate cert) throws KeyStoreException {
+		throw new KeyStoreException("El KeyStore FIEL es de solo lectura");
+	}
+
+	@Override
+	public void engineDeleteEntry(String alias) throws KeyStoreException {
+		throw new KeyStoreException("El KeyStore FIEL es de solo lectura");
+	}
+
+	@Override
+	public synchronized Enumeration<String> engineAliases() {
+		return Collections.enumeration(entries.keySet());
+	}
+
+	@Override
+	public boolean engineContainsAlias(String alias) {
+		return entry(alias) != null;
+	}
+
+	@Override
+	public synchronized int engineSize() {
+		return entries.size();
+	}
+
+	@Override
+	public boolean engineIsKeyEntry(String alias) {
+		FielIndex.Entry entry = entry(alias);
+		return entry != null && entry.getKey() != null;
+	}
+
+	@Override
+	public boolean engineIsCertificateEntry(String alias) {
+		FielIndex.Entry entry = entry(alias);
+		return entry != null && entry.getKey() == null;
+	}
+
+	/**
+	 * Busca el alias por la huella de la llave pública, sin leer los demás certificados
+	 */
+	@Override
+	public String engineGetCertificateAlias(Certificate cert) {
+		if (!(cert instanceof X509Certificate)) {
+			return null;
+		}
+		try {
+			String fingerprint = FielIndex.fingerprint((X509Certificate) cert);
+			synchronized (this) {
+				for (Map.Entry<String, FielIndex.Entry> entry : entries.entrySet()) {
+					if (entry.getValue().getFingerprint().equals(fingerprint)) {
+						return entry.getKey();
+					}
+				}
+			}
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+		return null;
+	}
+
+	@Override
+	public void engineStore(OutputStream stream, char[] password) throws IOException {
+		throw new IOException("El KeyStore FIEL es de solo lectura, use FielConverter para generar un p12 o jks");
+	}
+
+	private synchronized FielIndex.Entry entry(String alias) {
+		return (alias == null) ? null : entries.get(alias.trim());
+	}
+}
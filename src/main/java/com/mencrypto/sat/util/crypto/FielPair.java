@@ -0,0 +1,133 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Par de llave y certificado de una FIEL que se procesa en modo por lote,
+ * junto con la fuente de su contraseña y el formato de salida deseado
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class FielPair {
+
+	private final File key;
+	private final File cer;
+	private final String passwordSource;
+	private final OutputFormat format;
+	private final String error;
+
+	/**
+	 * @param key File de la llave .key, puede ser nulo si no se encontró pareja
+	 * @param cer File del certificado .cer, puede ser nulo si no se encontró pareja
+	 * @param passwordSource fuente de la contraseña (env:VARIABLE, file:ruta, pwd:valor o el valor directo),
+	 * si es nulo se usa la contraseña general del lote
+	 * @param format formato de salida, si es nulo se usa P12
+	 */
+	public FielPair(File key, File cer, String passwordSource, OutputFormat format) {
+		this(key, cer, passwordSource, format, null);
+	}
+
+	private FielPair(File key, File cer, String passwordSource, OutputFormat format, String error) {
+		this.key = key;
+		this.cer = cer;
+		this.passwordSource = passwordSource;
+		this.format = (format == null) ? OutputFormat.P12 : format;
+		this.error = error;
+	}
+
+	/**
+	 * Crea un par que no se puede procesar porque su renglón del manifiesto tiene un error, el par
+	 * se conserva para que aparezca como falla en el reporte sin detener el resto del lote
+	 * @param key File de la llave .key o nulo
+	 * @param cer File del certificado .cer o nulo
+	 * @param format formato de salida, si es nulo se usa P12
+	 * @param error descripción del error del renglón
+	 * @return FielPair con el error
+	 */
+	static FielPair invalid(File key, File cer, OutputFormat format, String error) {
+		return new FielPair(key, cer, null, format, error);
+	}
+
+	public File getKey() {
+		return key;
+	}
+
+	public File getCer() {
+		return cer;
+	}
+
+	public String getPasswordSource() {
+		return passwordSource;
+	}
+
+	public OutputFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return String error del renglón del manifiesto o null si el par se leyó correctamente
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Obtiene la contraseña de la llave a partir de su fuente sin pasar por String, el archivo de una fuente
+	 * {@code file:} se lee completo y sus bytes se limpian al terminar
+	 * @param defaultPassword contraseña general que se usa si el par no indica una fuente, no se modifica
+	 * @return char[] copia nueva de la contraseña que el llamador debe limpiar, o null si no hay contraseña
+	 * @throws IOException si la fuente es un archivo que no se puede leer
+	 * @throws IllegalStateException si la fuente es una variable de entorno inexistente
+	 */
+	public char[] readPassword(char[] defaultPassword) throws IOException {
+		if (passwordSource == null || passwordSource.isEmpty()) {
+			return (defaultPassword == null) ? null : defaultPassword.clone();
+		}
+		if (passwordSource.startsWith("env:")) {
+			String value = System.getenv(passwordSource.substring(4));
+			if (value == null) {
+				throw new IllegalStateException("No existe la variable de entorno " + passwordSource.substring(4));
+			}
+			return value.toCharArray();
+		}
+		if (passwordSource.startsWith("file:")) {
+			return readFirstLine(Path.of(passwordSource.substring(5)));
+		}
+		if (passwordSource.startsWith("pwd:")) {
+			return passwordSource.substring(4).toCharArray();
+		}
+		return passwordSource.toCharArray();
+	}
+
+	/**
+	 * Decodifica la primera línea del archivo en UTF-8
+	 */
+	private static char[] readFirstLine(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		try {
+			int end = 0;
+			while (end < bytes.length && bytes[end] != '\n' && bytes[end] != '\r') {
+				end++;
+			}
+			CharBuffer decoded = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes, 0, end));
+			char[] password = Arrays.copyOf(decoded.array(), decoded.limit());
+			Arrays.fill(decoded.array(), '\0');
+			return password;
+		} finally {
+			Arrays.fill(bytes, (byte) 0);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "key=" + key + ", cer=" + cer + ", formato=" + format;
+	}
+}
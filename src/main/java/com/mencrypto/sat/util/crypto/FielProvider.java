@@ -0,0 +1,22 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.security.Provider;
+
+/**
+ * Proveedor JCA que registra el KeyStore de tipo "FIEL", ver {@link FielKeyStoreSpi}
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class FielProvider extends Provider {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Nombre del proveedor */
+	public static final String PROVIDER_NAME = "FIEL";
+
+	public FielProvider() {
+		super(PROVIDER_NAME, "1.0", "KeyStore de solo lectura sobre un directorio de FIEL del SAT");
+		putService(new Service(this, "KeyStore", "FIEL", FielKeyStoreSpi.class.getName(), null, null));
+	}
+}
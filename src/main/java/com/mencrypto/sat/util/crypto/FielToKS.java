@@ -1,8 +1,35 @@
 package com.mencrypto.sat.util.crypto;
 
+import java.io.BufferedReader;
 import java.io.Console;
 import java.io.File;
-import java.io.FilenameFilter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertificateException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -14,25 +41,73 @@ import org.apache.commons.cli.ParseException;
 
 public class FielToKS {
 
+	private static final String VERSION = "Version 1.0.0";
+
 	public static void main(String[] args) {
 		
+		// La versión no requiere analizar los argumentos ni cargar BouncyCastle
+		if (args.length == 1 && ("-v".equals(args[0]) || "--version".equals(args[0]))) {
+			System.out.println(VERSION);
+			return;
+		}
+		
 		Options options = new Options();
 		options.addOption("h", "help", false, "Ayuda");
         options.addOption("v", "version", false, "Versión");
-        options.addOption("key", "key", true, "Ruta del archivo key, si no existe se intentará con el primer archivo .key que exista en el directorio");
-        options.addOption("cer", "cer", true, "Ruta del archivo cer, si no existe se intentará con el primer archivo .cer que exista en el directorio");
+        options.addOption("key", "key", true, "Ruta del archivo key, si no existe se busca en el índice de la bóveda o del directorio actual");
+        options.addOption("cer", "cer", true, "Ruta del archivo cer, si no existe se busca en el índice de la bóveda o del directorio actual");
         options.addOption("pwd", "password", true, "Contraseña de la FIEL, o la llave");
         options.addOption("jks", "jks", false, "Indica si se genera un archivo jks, por default generará un KeyStore en formato p12 (pfx)");
         // El password final es opcional pasarle un valor, si no tiene lo va a solicitar
 	    Option option = new Option("pwdf", "passwordFinal", true, "Establece la contraseña del KeyStore generado, si no tiene valor será requerido");
 	    option.setOptionalArg(true);
 	    options.addOption(option);
+        options.addOption("batch", "batch", true, "Convierte en lote los pares de un directorio o de un manifiesto CSV o JSON (key,cer,password,format)");
+        options.addOption("report", "report", true, "Ruta del reporte CSV del lote, por default reporte_lote.csv en el directorio actual");
+        options.addOption("threads", "threads", true, "Número de hilos para el lote, por default el número de núcleos");
+        options.addOption("serve", "serve", false, "Inicia un servidor HTTP local que convierte FIEL bajo demanda en POST /convert");
+        options.addOption("host", "host", true, "Dirección en la que escucha el servidor, por default 127.0.0.1");
+        options.addOption("port", "port", true, "Puerto en el que escucha el servidor, por default 8080");
+        options.addOption("maxConcurrent", "maxConcurrent", true, "Conversiones simultáneas del servidor, por default el número de núcleos");
+        options.addOption("grace", "grace", true, "Segundos que espera el servidor a las peticiones en curso al detenerse, por default 10");
+        options.addOption("cacheSize", "cacheSize", true, "Llaves descifradas que conserva el servidor en caché, por default 0 sin caché");
+        options.addOption("cacheTtl", "cacheTtl", true, "Minutos que una llave permanece en el caché del servidor, por default 30");
+        options.addOption("profile", "profile", true, "Perfil de protección del p12: default, legacy, modern o fast");
+        options.addOption("iterations", "iterations", true, "Iteraciones del KDF y la MAC para el perfil modern, por default 10000");
+        options.addOption("sign", "sign", true, "Firma con SHA256withRSA cada línea de la entrada estándar (-), cada línea de un archivo o cada archivo de un directorio");
+        options.addOption("out", "out", true, "Archivo de salida, por default la salida estándar");
+        options.addOption("pembundle", "pembundle", true, "Escribe en un solo PEM los certificados de un directorio o de un manifiesto CSV o JSON");
+        options.addOption("withkeys", "withkeys", false, "Con -pembundle también escribe las llaves descifradas");
+        Option metricsOption = new Option("metrics", "metrics", true, "Al terminar muestra o escribe en el archivo indicado un resumen JSON con la duración de cada etapa");
+        metricsOption.setOptionalArg(true);
+        options.addOption(metricsOption);
+        options.addOption("vault", "vault", true, "Directorio de la bóveda de FIEL, se indexa de forma recursiva y el índice se guarda en su raíz");
+        options.addOption("rfc", "rfc", true, "Elige del índice el par vigente del RFC indicado");
+        options.addOption("serial", "serial", true, "Elige del índice el par con el número de certificado o de serie indicado");
+        options.addOption("list", "list", false, "Muestra los certificados del índice que cumplen con -rfc, -serial o -expiring");
+        options.addOption("expiring", "expiring", true, "Con -list muestra solo los certificados que vencen en los próximos días indicados");
+        options.addOption("update", "update", true, "Actualiza el KeyStore indicado con los pares de -batch o de -key y -cer sin reconstruirlo");
+        options.addOption("remove", "remove", true, "Con -update elimina los alias indicados separados por coma");
+        options.addOption("prune", "prune", false, "Con -update elimina las entradas con certificado vencido");
+        options.addOption("verify", "verify", false, "Revisa sin generar KeyStore que la contraseña descifre la llave y que corresponda al certificado, con -batch revisa todos los pares en paralelo");
+        options.addOption("migrate", "migrate", true, "Migra los KeyStore de un directorio o archivo a p12, o a jks con -jks, cifrándolos con -pwdf y el perfil indicado");
+        options.addOption("from", "from", true, "Con -migrate formato de los KeyStore que se migran: jks o p12, por default jks");
+        options.addOption("journal", "journal", true, "Con -migrate bitácora para continuar una migración interrumpida, por default migracion.journal");
+        options.addOption("deletesource", "deletesource", false, "Con -migrate borra el KeyStore original cuando el destino tiene otra extensión");
+        options.addOption("cadir", "cadir", true, "Valida sin conexión la vigencia y la cadena del certificado con las CA del SAT del directorio indicado antes de convertir");
+        options.addOption("crl", "crl", true, "Con -cadir rechaza los certificados revocados en las CRL del directorio indicado");
+        options.addOption("selftest", "selftest", false, "Convierte la FIEL de -key, -cer y -pwd a p12, jks y PEM en un directorio temporal para revisar la instalación");
         
         CommandLineParser parser = new DefaultParser(); 
         
         // Parámetros neecesarios
-        String keyPath = null, certPath = null, password = null, passwordFinal = null;
+        String keyPath = null, certPath = null;
+        char[] password = null, passwordFinal = null;
+        String batchPath = null, reportPath = "reporte_lote.csv";
+        int threads = 0;
         Boolean jks = false;
+        ProtectionProfile profile = null;
+        ChainValidator validator = null;
         
         @SuppressWarnings("deprecation")
 		HelpFormatter formatter = new HelpFormatter();
@@ -45,122 +120,795 @@ public class FielToKS {
             }
 
             if (cmd.hasOption("v")) {
-                System.out.println("Version 1.0.0");
+                System.out.println(VERSION);
                 return;
             }
             
-            if (cmd.hasOption("key")) {
-                keyPath = cmd.getOptionValue("key");
-                System.out.println("Llave: " + keyPath);
-            }else {
-            	keyPath = getLocalCertOrKey("key");
-                if (keyPath == null) {
-                	System.out.println("No se encontró ninguna llave use la opción -key $ruta para indicar la ruta en la que tiene la llave de la FIEL");
-                	System.exit(1);
-                }
+            if (cmd.hasOption("selftest")) {
+            	if (!cmd.hasOption("key") || !cmd.hasOption("cer") || !cmd.hasOption("pwd")) {
+            		System.err.println("Error: Para la autoprueba indique la FIEL con -key, -cer y -pwd");
+            		System.exit(1);
+            	}
+            	runSelfTest(cmd.getOptionValue("key"), cmd.getOptionValue("cer"), cmd.getOptionValue("pwd").toCharArray());
+            	return;
             }
             
-            if (cmd.hasOption("cer")) {
-                certPath = cmd.getOptionValue("cer");
-                System.out.println("Certificado: " + certPath);
-            }else {
-            	certPath = getLocalCertOrKey("cer");
-                if (keyPath == null) {
-                	System.out.println("No se encontró ningun certificado use la opción -cer $path para indicar la ruta en la que tiene el certificado de la FIEL");
-                	System.exit(1);
+            if (cmd.hasOption("metrics")) {
+            	enableMetrics(cmd.getOptionValue("metrics"));
+            }
+            
+            if (cmd.hasOption("serve")) {
+            	int cacheSize = Integer.parseInt(cmd.getOptionValue("cacheSize", "0"));
+            	KeyCache keyCache = (cacheSize > 0)
+            			? new KeyCache(cacheSize, Duration.ofMinutes(Long.parseLong(cmd.getOptionValue("cacheTtl", "30")))) : null;
+            	runServer(cmd.getOptionValue("host", "127.0.0.1"), Integer.parseInt(cmd.getOptionValue("port", "8080")),
+            			Integer.parseInt(cmd.getOptionValue("maxConcurrent", "0")), Integer.parseInt(cmd.getOptionValue("grace", "10")), keyCache);
+            	return;
+            }
+            
+            if (cmd.hasOption("list")) {
+            	listVault(cmd.getOptionValue("vault"), cmd.getOptionValue("rfc"), cmd.getOptionValue("serial"),
+            			Integer.parseInt(cmd.getOptionValue("expiring", "-1")));
+            	return;
+            }
+            
+            if (cmd.hasOption("sign")) {
+            	if (!cmd.hasOption("key") || !cmd.hasOption("pwd")) {
+            		System.err.println("Error: Para firmar indique la llave con -key y su contraseña con -pwd");
+            		System.exit(1);
+            	}
+            	runSign(cmd.getOptionValue("sign"), cmd.getOptionValue("out"), cmd.getOptionValue("key"),
+            			cmd.getOptionValue("pwd").toCharArray(), Integer.parseInt(cmd.getOptionValue("threads", "0")));
+            	return;
+            }
+            
+            if (cmd.hasOption("pembundle")) {
+            	runPemBundle(cmd.getOptionValue("pembundle"), cmd.getOptionValue("out"), cmd.hasOption("withkeys"), chars(cmd.getOptionValue("pwd")));
+            	return;
+            }
+            
+            if (cmd.hasOption("update")) {
+            	String keyStorePassword = cmd.getOptionValue("pwdf", cmd.getOptionValue("pwd"));
+            	if (keyStorePassword == null || keyStorePassword.isEmpty()) {
+            		System.out.println("Error: Indique la contraseña del KeyStore con -pwdf o -pwd");
+            		System.exit(1);
+            	}
+            	runUpdate(cmd.getOptionValue("update"), cmd.hasOption("jks"), cmd.getOptionValue("batch"), cmd.getOptionValue("key"),
+            			cmd.getOptionValue("cer"), chars(cmd.getOptionValue("pwd")), keyStorePassword.toCharArray(), cmd.getOptionValue("remove"),
+            			cmd.hasOption("prune"));
+            	return;
+            }
+            
+            if (cmd.hasOption("cadir")) {
+            	validator = loadValidator(cmd.getOptionValue("cadir"), cmd.getOptionValue("crl"));
+            }
+            
+            if (cmd.hasOption("verify")) {
+            	runVerify(cmd.getOptionValue("batch"), cmd.getOptionValue("key"), cmd.getOptionValue("cer"), cmd.getOptionValue("vault"),
+            			cmd.getOptionValue("rfc"), cmd.getOptionValue("serial"), chars(cmd.getOptionValue("pwd")),
+            			cmd.getOptionValue("report", "reporte_verificacion.csv"), Integer.parseInt(cmd.getOptionValue("threads", "0")), validator);
+            	return;
+            }
+            
+            if (cmd.hasOption("migrate")) {
+            	if (!cmd.hasOption("pwd")) {
+            		System.out.println("Error: Indique la contraseña actual de los KeyStore con -pwd");
+            		System.exit(1);
+            	}
+            	OutputFormat target = cmd.hasOption("jks") ? OutputFormat.JKS : OutputFormat.P12;
+            	ProtectionProfile migrationProfile = (target == OutputFormat.P12)
+            			? ProtectionProfile.parse(cmd.getOptionValue("profile"), Integer.parseInt(cmd.getOptionValue("iterations", "0")))
+            			: ProtectionProfile.bcDefault();
+            	String newPassword = cmd.getOptionValue("pwdf");
+            	runMigrate(cmd.getOptionValue("migrate"), OutputFormat.parse(cmd.getOptionValue("from", "jks")), target,
+            			cmd.getOptionValue("pwd").toCharArray(), (newPassword == null) ? null : newPassword.toCharArray(), migrationProfile,
+            			Integer.parseInt(cmd.getOptionValue("threads", "0")), cmd.getOptionValue("journal", "migracion.journal"),
+            			cmd.hasOption("deletesource"));
+            	return;
+            }
+            
+            if (cmd.hasOption("batch")) {
+                batchPath = cmd.getOptionValue("batch");
+                System.out.println("Lote: " + batchPath);
+                if (cmd.hasOption("report")) {
+                	reportPath = cmd.getOptionValue("report");
+                }
+                if (cmd.hasOption("threads")) {
+                	threads = Integer.parseInt(cmd.getOptionValue("threads"));
                 }
+            } else {
+            	if (cmd.hasOption("key")) {
+            		keyPath = cmd.getOptionValue("key");
+            		System.out.println("Llave: " + keyPath);
+            	}
+            	if (cmd.hasOption("cer")) {
+            		certPath = cmd.getOptionValue("cer");
+            		System.out.println("Certificado: " + certPath);
+            	}
+            	if (keyPath == null || certPath == null) {
+            		FielIndex.Entry entry = selectPair(cmd.getOptionValue("vault"), cmd.getOptionValue("rfc"), cmd.getOptionValue("serial"));
+            		if (entry == null || (keyPath == null && entry.getKey() == null)) {
+            			System.out.println("No se encontró ninguna llave use la opción -key $ruta para indicar la ruta en la que tiene la llave de la FIEL");
+            			System.exit(1);
+            		}
+            		if (keyPath == null) {
+            			keyPath = entry.getKey().toString();
+            			System.out.println("Llave: " + keyPath);
+            		}
+            		if (certPath == null) {
+            			certPath = entry.getCer().toString();
+            			System.out.println("Certificado: " + certPath);
+            		}
+            	}
             }
             
             if (cmd.hasOption("jks")) {
                 jks = true;
+                // El perfil solo aplica a los pares p12 de un manifiesto
+                profile = ProtectionProfile.bcDefault();
                 System.out.println("Opción jks encontrada, se generará un archivo jks");
             }else {
             	System.out.println("Opción jks no encontrada, se generará un archivo p12");
+            	profile = ProtectionProfile.parse(cmd.getOptionValue("profile"), Integer.parseInt(cmd.getOptionValue("iterations", "0")));
+            	System.out.println("Perfil de protección: " + profile);
             }
             
             if (cmd.hasOption("pwd")) {
-                password = cmd.getOptionValue("pwd");
-            }else {
+                password = cmd.getOptionValue("pwd").toCharArray();
+            }else if (batchPath == null) {
             	System.out.println("Ingrese la contraseña de la FIEL");
             	Console console = System.console();
             	if (console == null) {
                     System.out.println("Error: No se puede obtener la consola. Asegúrate de ejecutar el programa desde una terminal");
                     System.exit(1);
                 }
-            	char[] passwordArray = console.readPassword("Contraseña: ");
-                password = new String(passwordArray);
-                if (password.length() < 1 || password.length() > 128) {
+            	password = console.readPassword("Contraseña: ");
+                if (password == null || password.length < 1 || password.length > 128) {
                 	System.out.println("Error: La contraseña debe tener entre 1 y 128 caracteres");
                 	System.exit(1);
                 }
             }
             
             if (cmd.hasOption("pwdf")) {
-                passwordFinal = cmd.getOptionValue("pwdf");
-                if (passwordFinal == null || "".equals(passwordFinal)) {
+                passwordFinal = chars(cmd.getOptionValue("pwdf"));
+                if (passwordFinal == null || passwordFinal.length == 0) {
 	            	System.out.println("Ingrese la contraseña del KeyStore resultante entre 5 y 20 caracteres");
 	            	Console console = System.console();
 	            	if (console == null) {
 	                    System.out.println("Error: No se puede obtener la consola. Asegúrate de ejecutar el programa desde una terminal");
 	                    System.exit(1);
 	                }
-	            	char[] passwordArrayFinal = console.readPassword("Contraseña final: ");
-	            	// Convertir el array de char a String
-	                passwordFinal = new String(passwordArrayFinal);
-	                if (passwordFinal.length() < 5 || passwordFinal.length() > 20) {
+	            	passwordFinal = console.readPassword("Contraseña final: ");
+	                if (passwordFinal == null || passwordFinal.length < 5 || passwordFinal.length > 20) {
 	                	System.out.println("Error: La contraseña debe tener entre 1 y 128 caracteres");
 	                	System.exit(1);
 	                }
                 }
             }
-        } catch (ParseException e) {
+        } catch (ParseException | IllegalArgumentException e) {
             System.out.println("Error de análisis de argumentos: " + e.getMessage());
             formatter.printHelp("Ejemplo CLI", options);
             System.exit(1);
         }
 
+		if (batchPath != null) {
+			runBatch(batchPath, reportPath, threads, jks, profile, password, passwordFinal, validator);
+			wipe(password);
+			wipe(passwordFinal);
+			return;
+		}
+
 		File key = new File(keyPath);
 		File certFile = new File(certPath);
+		if (validator != null) {
+			validateCertificate(validator, certFile);
+		}
 
-		Boolean changePwd = passwordFinal != null || ! "".equals(passwordFinal);
+		// Sin pwdf el KeyStore queda con la misma contraseña de la FIEL
 		if(jks) {
-			if(changePwd) {
-				//Crea un JKS con una nueva password
-				FIELConvertions.createJKSwithCertAndKey(key, certFile, password, passwordFinal);
-			}else {
-				//Crea un JKS con el mismo password de la FIEL
-				FIELConvertions.createJKSwithCertAndKey(key, certFile, password);
-			}	
+			FIELConvertions.createJKSwithCertAndKey(key, certFile, password, passwordFinal);
 		}else {
-			if(changePwd) {
-				//Crea un P12 con una nueva password
-				FIELConvertions.createPKCS12withCertAndKey(key, certFile, password, passwordFinal);
+			FIELConvertions.createPKCS12withCertAndKey(key, certFile, password, passwordFinal, profile);
+		}
+		wipe(password);
+		wipe(passwordFinal);
+		
+	}
 
-			}else {
-				//Crea un P12 con el mismo password de la FIEL
-				FIELConvertions.createPKCS12withCertAndKey(key, certFile, password);
+	/**
+	 * Contraseña de un argumento o null si no se indicó, los argumentos ya llegan como String
+	 */
+	private static char[] chars(String value) {
+		return (value == null) ? null : value.toCharArray();
+	}
+
+	/**
+	 * Limpia la contraseña si existe
+	 */
+	private static void wipe(char[] password) {
+		if (password != null) {
+			Arrays.fill(password, '\0');
+		}
+	}
+
+	/**
+	 * Activa las métricas por etapa y al terminar el proceso muestra el resumen JSON,
+	 * se usa un hook de terminación para que también se muestre cuando el proceso termina con error
+	 * @param metricsPath archivo donde se escribe el resumen o null para mostrarlo en consola
+	 */
+	private static void enableMetrics(String metricsPath) {
+		ConversionMetrics.enable();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			String json = ConversionMetrics.toJson();
+			if (metricsPath == null || metricsPath.isEmpty()) {
+				System.out.println(json);
+				return;
+			}
+			try {
+				Files.writeString(Path.of(metricsPath), json);
+				System.out.println("Métricas escritas en: " + metricsPath);
+			} catch (IOException e) {
+				System.out.println("Error al escribir las métricas: " + e.getMessage());
 			}
+		}));
+	}
+
+	/**
+	 * Inicia el servidor de conversión y bloquea hasta que el proceso recibe la señal de terminación,
+	 * en ese momento se detiene de forma ordenada esperando a las peticiones en curso
+	 * @param host dirección en la que escucha
+	 * @param port puerto en el que escucha
+	 * @param maxConcurrent conversiones simultáneas, 0 para usar el número de núcleos
+	 * @param grace segundos de espera para las peticiones en curso al detenerse
+	 * @param keyCache caché de llaves descifradas o null
+	 */
+	private static void runServer(String host, int port, int maxConcurrent, int grace, KeyCache keyCache) {
+		try {
+			FielConverter converter = (keyCache == null) ? FielConverter.getDefault() : new FielConverter(keyCache);
+			ConversionServer server = new ConversionServer(new InetSocketAddress(host, port), maxConcurrent, 1000, converter);
+			CountDownLatch stopped = new CountDownLatch(1);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				System.out.println("Deteniendo servidor...");
+				server.stop(grace);
+				if (keyCache != null) {
+					System.out.println(keyCache);
+					keyCache.clear();
+				}
+				stopped.countDown();
+			}));
+			server.start();
+			System.out.println("Servidor escuchando en http://" + host + ":" + server.getAddress().getPort() + "/convert");
+			stopped.await();
+		} catch (IOException e) {
+			System.out.println("Error al iniciar el servidor: " + e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
-		
 	}
 
 	/**
-	 * Obtiene el primer archivo con la extensión fileExtension que se le pasa
-	 * útil para buscar el key y cer de la FIEL
-	 * @param fileExtension extensión del archivo que se quiere buscar
-	 * @return String con la ruta de un archivo encontrado
+	 * Revisa la contraseña, la correspondencia entre llave y certificado y la vigencia sin generar KeyStore.
+	 * Con un lote escribe el reporte CSV y muestra solo los pares con error, termina con código 1 si alguno falló
+	 * @param batchPath directorio o manifiesto CSV o JSON, o null para un solo par
+	 * @param keyPath llave de un solo par o null para buscarla en la bóveda
+	 * @param certPath certificado de un solo par o null para buscarlo en la bóveda
+	 * @param vault directorio de la bóveda o null
+	 * @param rfc RFC para elegir el par de la bóveda o null
+	 * @param serial número de certificado para elegir el par de la bóveda o null
+	 * @param password contraseña por default de las llaves, si es nula y no hay lote se solicita en la consola
+	 * @param reportPath ruta del reporte CSV del lote
+	 * @param threads número de hilos, si es 0 se usa el número de núcleos
+	 * @param validator valida la cadena del certificado o null para revisar solo la vigencia
 	 */
-	private static String getLocalCertOrKey(String fileExtension) {
-        String currentDirectory = System.getProperty("user.dir");
-        System.out.println("Buscando archivo " + fileExtension +" en directorio actual: " + currentDirectory);
-        File dir = new File(currentDirectory);
-        FilenameFilter filter = (file, name) -> name.endsWith(fileExtension);
-        File[] docFiles = dir.listFiles(filter);
-        if (docFiles != null && docFiles.length > 0) {
-        	return docFiles[0].getPath();
-        } else {
-            return null;
-        }
+	private static void runVerify(String batchPath, String keyPath, String certPath, String vault, String rfc, String serial,
+			char[] password, String reportPath, int threads, ChainValidator validator) {
+		try {
+			List<FielPair> pairs;
+			if (batchPath != null) {
+				pairs = ManifestReader.read(Path.of(batchPath), OutputFormat.P12);
+			} else {
+				if (keyPath == null || certPath == null) {
+					FielIndex.Entry entry = selectPair(vault, rfc, serial);
+					if (entry == null || (keyPath == null && entry.getKey() == null)) {
+						System.out.println("No se encontró ninguna llave use la opción -key $ruta para indicar la ruta en la que tiene la llave de la FIEL");
+						System.exit(1);
+					}
+					keyPath = (keyPath == null) ? entry.getKey().toString() : keyPath;
+					certPath = (certPath == null) ? entry.getCer().toString() : certPath;
+				}
+				pairs = List.of(new FielPair(new File(keyPath), new File(certPath), null, OutputFormat.P12));
+				if (password == null) {
+					Console console = System.console();
+					if (console == null) {
+						System.out.println("Error: Indique la contraseña de la FIEL con -pwd");
+						System.exit(1);
+					}
+					password = console.readPassword("Contraseña: ");
+				}
+			}
+			PairVerifier verifier = new PairVerifier(threads, password, validator);
+			if (batchPath == null) {
+				PairVerifier.Result result = verifier.verify(pairs.get(0));
+				System.out.println((result.isValid() ? "Par válido: " : "Par rechazado: ") + result);
+				if (!result.isValid()) {
+					System.exit(1);
+				}
+				return;
+			}
+			System.out.println("Pares encontrados: " + pairs.size());
+			List<PairVerifier.Result> results = verifier.run(pairs, Path.of(reportPath));
+			long failed = 0;
+			for (PairVerifier.Result result : results) {
+				if (!result.isValid()) {
+					failed++;
+					System.out.println("ERROR: " + result.getPair() + " " + result);
+				}
+			}
+			System.out.println("Revisión terminada: " + (results.size() - failed) + " válidos, " + failed + " con error. Reporte en: "
+					+ reportPath);
+			if (failed > 0) {
+				System.exit(1);
+			}
+		} catch (IOException e) {
+			System.out.println("Error al revisar los pares: " + e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.exit(1);
+		} finally {
+			wipe(password);
+		}
+	}
+
+	/**
+	 * Migra los KeyStore y muestra el resumen, termina con código 1 si algún archivo falló
+	 * @param source archivo o directorio con los KeyStore
+	 * @param sourceFormat formato de los KeyStore que se migran
+	 * @param targetFormat formato destino
+	 * @param password contraseña actual
+	 * @param newPassword contraseña nueva o null para conservar la actual
+	 * @param profile perfil de protección de los p12 destino
+	 * @param threads número de hilos, si es 0 se usa el número de núcleos
+	 * @param journal ruta de la bitácora
+	 * @param deleteSource si se borra el original cuando cambia la extensión
+	 */
+	private static void runMigrate(String source, OutputFormat sourceFormat, OutputFormat targetFormat, char[] password,
+			char[] newPassword, ProtectionProfile profile, int threads, String journal, boolean deleteSource) {
+		try {
+			KeyStoreMigrator migrator = new KeyStoreMigrator(sourceFormat, targetFormat, password, newPassword, profile, threads, deleteSource);
+			List<Path> files = migrator.find(Path.of(source));
+			System.out.println("KeyStore encontrados: " + files.size() + ", destino " + targetFormat + " con perfil " + profile);
+			List<KeyStoreMigrator.FileResult> results = migrator.run(files, Path.of(journal));
+			long failed = 0;
+			for (KeyStoreMigrator.FileResult result : results) {
+				if (result.getStatus() == KeyStoreMigrator.Status.FAILED) {
+					failed++;
+					System.out.println("ERROR: " + result.getSource() + " " + result.getMessage());
+				}
+			}
+			long migrated = results.stream().filter(r -> r.getStatus() == KeyStoreMigrator.Status.MIGRATED).count();
+			System.out.println("Migración terminada: " + migrated + " migrados, " + (results.size() - migrated - failed) + " omitidos, "
+					+ failed + " con error. Bitácora en: " + journal);
+			if (failed > 0) {
+				System.exit(1);
+			}
+		} catch (IOException e) {
+			System.out.println("Error en la migración: " + e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.exit(1);
+		} finally {
+			wipe(password);
+			wipe(newPassword);
+		}
+	}
+
+	/**
+	 * Copia la FIEL a un directorio temporal y la convierte a p12, jks y PEM con el mismo código de la
+	 * conversión normal, termina con código 1 si algo falla. Sirve para revisar una instalación y, con la
+	 * FIEL de muestra de src/test/resources/fiel, como carga de entrenamiento del archivo AppCDS de la imagen
+	 * de ejecución
+	 * @param keyPath ruta de la llave
+	 * @param cerPath ruta del certificado
+	 * @param password contraseña de la llave, se limpia al terminar
+	 */
+	private static void runSelfTest(String keyPath, String cerPath, char[] password) {
+		Path dir = null;
+		String failure = null;
+		try {
+			dir = Files.createTempDirectory("fiel-autoprueba");
+			File key = Files.copy(Path.of(keyPath), dir.resolve(Path.of(keyPath).getFileName())).toFile();
+			File cer = Files.copy(Path.of(cerPath), dir.resolve(Path.of(cerPath).getFileName())).toFile();
+			String p12 = FIELConvertions.createPKCS12withCertAndKey(key, cer, password, "autoprueba".toCharArray(), ProtectionProfile.bcDefault());
+			String jks = FIELConvertions.createJKSwithCertAndKey(key, cer, password, "autoprueba".toCharArray());
+			if (p12 == null || jks == null || FIELConvertions.convertKeyDERToPEM(key, password) == null
+					|| FIELConvertions.convertcerx509ToPEM(cer) == null) {
+				failure = "no se generaron todas las salidas";
+			} else {
+				KeyStore keyStore = KeyStore.getInstance("PKCS12");
+				try (InputStream in = Files.newInputStream(Path.of(p12))) {
+					keyStore.load(in, "autoprueba".toCharArray());
+				}
+				boolean hasKey = false;
+				for (String alias : Collections.list(keyStore.aliases())) {
+					hasKey |= keyStore.isKeyEntry(alias);
+				}
+				if (!hasKey) {
+					failure = "el p12 no contiene la llave de " + cer.getName();
+				}
+			}
+		} catch (IOException | GeneralSecurityException e) {
+			failure = e.getMessage();
+		} finally {
+			wipe(password);
+			deleteRecursively(dir);
+		}
+		if (failure != null) {
+			System.out.println("Autoprueba fallida: " + failure);
+			System.exit(1);
+		}
+		System.out.println("Autoprueba correcta");
+	}
+
+	private static void deleteRecursively(Path dir) {
+		if (dir == null) {
+			return;
+		}
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		} catch (IOException e) {
+			System.out.println("No se pudo borrar el directorio temporal: " + dir);
+		}
+	}
+
+	/**
+	 * Carga las CA y las CRL para validar los certificados, termina con código 1 si no se pueden leer
+	 * @param caDirectory directorio de las CA del SAT
+	 * @param crlDirectory directorio de las CRL o null
+	 * @return ChainValidator listo para validar
+	 */
+	private static ChainValidator loadValidator(String caDirectory, String crlDirectory) {
+		try {
+			ChainValidator validator = ChainValidator.load(Path.of(caDirectory), (crlDirectory == null) ? null : Path.of(crlDirectory));
+			System.out.println("CA de confianza: " + validator.getAuthorityCount() + ", CRL: " + validator.getCrlCount());
+			for (Path ignored : validator.getIgnoredCrls()) {
+				System.out.println("CRL ignorada, no la firmó ninguna CA de confianza: " + ignored);
+			}
+			return validator;
+		} catch (IOException | GeneralSecurityException e) {
+			System.out.println("Error al cargar las CA: " + e.getMessage());
+			System.exit(1);
+			return null;
+		}
+	}
+
+	/**
+	 * Valida el certificado antes de convertirlo, termina con código 1 si no es válido
+	 * @param validator validador con las CA del SAT
+	 * @param certFile certificado a validar
+	 */
+	private static void validateCertificate(ChainValidator validator, File certFile) {
+		try {
+			validator.validate(FielConverter.getDefault().loadCertificate(certFile));
+			System.out.println("Certificado válido");
+		} catch (IOException | CertificateException e) {
+			System.out.println("Error al leer el certificado: " + e.getMessage());
+			System.exit(1);
+		} catch (CertPathValidatorException e) {
+			System.out.println("Certificado rechazado: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Ejecuta la conversión por lote y muestra el resumen, termina con código 1 si algún par falló
+	 * @param batchPath ruta de un directorio o de un manifiesto CSV o JSON
+	 * @param reportPath ruta del reporte CSV
+	 * @param threads número de hilos, si es 0 se usa el número de núcleos
+	 * @param jks indica si el formato por default del lote es jks
+	 * @param profile perfil de protección de los p12
+	 * @param password contraseña por default de las llaves
+	 * @param passwordFinal contraseña de los KeyStore generados
+	 * @param validator valida el certificado de cada par o null
+	 */
+	private static void runBatch(String batchPath, String reportPath, int threads, Boolean jks, ProtectionProfile profile, char[] password,
+			char[] passwordFinal, ChainValidator validator) {
+		try {
+			List<FielPair> pairs = ManifestReader.read(Path.of(batchPath), jks ? OutputFormat.JKS : OutputFormat.P12);
+			System.out.println("Pares encontrados: " + pairs.size());
+			BatchConverter converter = new BatchConverter(threads, password, passwordFinal, profile, validator);
+			List<BatchConverter.PairResult> results = converter.run(pairs, Path.of(reportPath));
+			long failed = 0;
+			for (BatchConverter.PairResult result : results) {
+				if (!result.isSuccess()) {
+					failed++;
+					System.out.println("ERROR: " + result.getPair() + " " + result.getMessage());
+				}
+			}
+			System.out.println("Lote terminado: " + (results.size() - failed) + " correctos, " + failed + " con error. Reporte en: " + reportPath);
+			if (failed > 0) {
+				System.exit(1);
+			}
+		} catch (IOException e) {
+			System.out.println("Error al procesar el lote: " + e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Firma los mensajes de la fuente indicada y escribe una firma en base64 por línea en el mismo orden,
+	 * los mensajes de estado van a la salida de errores para no mezclarse con las firmas
+	 * @param source "-" para la entrada estándar, un archivo para firmar cada línea o un directorio para firmar cada archivo
+	 * @param outPath archivo de salida o null para la salida estándar
+	 * @param keyPath ruta de la llave
+	 * @param password contraseña de la llave, se limpia al terminar
+	 * @param threads número de hilos, si es 0 se usa el número de núcleos
+	 */
+	private static void runSign(String source, String outPath, String keyPath, char[] password, int threads) {
+		try {
+			BatchSigner signer = BatchSigner.load(new File(keyPath), password, threads);
+			Arrays.fill(password, '\0');
+			long start = System.nanoTime();
+			long count;
+			try (OutputStream out = (outPath == null) ? new FileOutputStream(FileDescriptor.out) : Files.newOutputStream(Path.of(outPath))) {
+				if ("-".equals(source)) {
+					count = signer.signAll(BatchSigner.lines(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))), out);
+				} else if (Files.isDirectory(Path.of(source))) {
+					List<Path> files;
+					try (Stream<Path> list = Files.list(Path.of(source))) {
+						files = list.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+					}
+					count = signer.signAll(BatchSigner.files(files), out);
+				} else {
+					try (BufferedReader reader = Files.newBufferedReader(Path.of(source), StandardCharsets.UTF_8)) {
+						count = signer.signAll(BatchSigner.lines(reader), out);
+					}
+				}
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.err.println(String.format("Mensajes firmados: %d en %.2f s, %.0f firmas/s", count, seconds, count / seconds));
+		} catch (IOException | GeneralSecurityException e) {
+			System.err.println("Error al firmar " + ConversionMetrics.failure(e) + ": " + e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Escribe un solo PEM con los certificados y opcionalmente las llaves, un error en una entrada
+	 * no detiene la exportación y al final termina con código 1 si alguna falló
+	 * @param source directorio o manifiesto CSV o JSON
+	 * @param outPath archivo de salida o null para la salida estándar
+	 * @param withKeys indica si se escriben las llaves descifradas
+	 * @param password contraseña por default de las llaves
+	 */
+	private static void runPemBundle(String source, String outPath, Boolean withKeys, char[] password) {
+		Path sourcePath = Path.of(source);
+		int failed = 0;
+		try (PemBundleExporter exporter = (outPath == null)
+				? new PemBundleExporter(Channels.newChannel(new FileOutputStream(FileDescriptor.out)))
+				: PemBundleExporter.open(Path.of(outPath))) {
+			if (!withKeys && Files.isDirectory(sourcePath)) {
+				// Solo certificados, se recorre el directorio sin cargar la lista completa
+				try (Stream<Path> files = Files.walk(sourcePath)) {
+					Iterator<Path> it = files.filter(f -> f.getFileName().toString().toLowerCase().endsWith(".cer")).iterator();
+					while (it.hasNext()) {
+						Path cer = it.next();
+						try {
+							exporter.addCertificate(cer);
+						} catch (IOException | GeneralSecurityException e) {
+							failed++;
+							System.err.println("Error " + ConversionMetrics.failure(e) + " en " + cer + ": " + e.getMessage());
+						}
+					}
+				}
+			} else {
+				for (FielPair pair : ManifestReader.read(sourcePath, OutputFormat.PEM)) {
+					try {
+						if (pair.getError() != null) {
+							throw new IOException(pair.getError());
+						}
+						if (withKeys && pair.getKey() != null) {
+							char[] keyPassword = pair.readPassword(password);
+							if (keyPassword == null) {
+								throw new IOException("no se indicó la contraseña de la llave");
+							}
+							try {
+								exporter.addKey(pair.getKey().toPath(), keyPassword);
+							} finally {
+								wipe(keyPassword);
+							}
+						}
+						if (pair.getCer() != null) {
+							exporter.addCertificate(pair.getCer().toPath());
+						}
+					} catch (IOException | GeneralSecurityException e) {
+						failed++;
+						System.err.println("Error " + ConversionMetrics.failure(e) + " en " + pair + ": " + e.getMessage());
+					}
+				}
+			}
+			exporter.flush();
+			System.err.println("PEM generado con " + exporter.getCertificateCount() + " certificados y " + exporter.getKeyCount()
+					+ " llaves" + ((outPath == null) ? "" : " en: " + outPath));
+		} catch (IOException e) {
+			System.err.println("Error al generar el PEM: " + e.getMessage());
+			System.exit(1);
+		}
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Agrega, reemplaza y elimina entradas de un KeyStore existente y lo guarda de forma atómica,
+	 * termina con código 1 si algún par falló
+	 * @param keyStorePath ruta del KeyStore, si no existe se crea
+	 * @param jks indica si el KeyStore es jks, también se deduce de la extensión
+	 * @param batchPath directorio o manifiesto con los pares a agregar o null
+	 * @param keyPath llave de un solo par o null
+	 * @param certPath certificado de un solo par o null
+	 * @param password contraseña por default de las llaves
+	 * @param keyStorePassword contraseña del KeyStore
+	 * @param remove alias a eliminar separados por coma o null
+	 * @param prune indica si se eliminan las entradas vencidas
+	 */
+	private static void runUpdate(String keyStorePath, Boolean jks, String batchPath, String keyPath, String certPath,
+			char[] password, char[] keyStorePassword, String remove, Boolean prune) {
+		OutputFormat format = (jks || keyStorePath.toLowerCase().endsWith(".jks")) ? OutputFormat.JKS : OutputFormat.P12;
+		KeyStoreUpdater updater = new KeyStoreUpdater(Path.of(keyStorePath), format, keyStorePassword);
+		int failed = 0;
+		try {
+			updater.open();
+			List<FielPair> pairs = new ArrayList<>();
+			if (batchPath != null) {
+				pairs.addAll(ManifestReader.read(Path.of(batchPath), format));
+			} else if (keyPath != null && certPath != null) {
+				pairs.add(new FielPair(new File(keyPath), new File(certPath), null, format));
+			}
+			for (FielPair pair : pairs) {
+				try {
+					if (pair.getError() != null) {
+						throw new IOException(pair.getError());
+					}
+					if (pair.getKey() == null || pair.getCer() == null) {
+						throw new IOException("par incompleto");
+					}
+					char[] keyPassword = pair.readPassword(password);
+					if (keyPassword == null) {
+						throw new IOException("no se indicó la contraseña de la llave");
+					}
+					try {
+						KeyStoreUpdater.Change change = updater.put(pair.getKey().toPath(), pair.getCer().toPath(), keyPassword);
+						System.out.println(change + ": " + pair.getCer());
+					} finally {
+						wipe(keyPassword);
+					}
+				} catch (IOException | GeneralSecurityException e) {
+					failed++;
+					System.out.println("ERROR: " + pair + " " + e.getMessage());
+				}
+			}
+			if (remove != null) {
+				for (String alias : remove.split(",")) {
+					System.out.println((updater.remove(alias.trim()) ? "REMOVED: " : "No existe el alias: ") + alias.trim());
+				}
+			}
+			if (prune) {
+				for (String alias : updater.pruneExpired(new java.util.Date())) {
+					System.out.println("EXPIRED: " + alias);
+				}
+			}
+			if (updater.save()) {
+				System.out.println("KeyStore actualizado en: " + keyStorePath + " con " + updater.size() + " entradas");
+			} else {
+				System.out.println("Sin cambios en: " + keyStorePath);
+			}
+		} catch (IOException | GeneralSecurityException e) {
+			System.out.println("Error al actualizar el KeyStore: " + e.getMessage());
+			System.exit(1);
+		} finally {
+			wipe(password);
+			wipe(keyStorePassword);
+		}
+		if (failed > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Abre el índice de la bóveda indicada, si no se indica se usa solo el directorio actual
+	 * sin guardar el índice, igual que la búsqueda original del primer .key y .cer
+	 * @param vault directorio de la bóveda o null
+	 * @return FielIndex actualizado
+	 * @throws IOException si no se puede recorrer el directorio
+	 */
+	private static FielIndex openIndex(String vault) throws IOException {
+		if (vault != null) {
+			System.out.println("Indexando bóveda: " + vault);
+			FielIndex index = FielIndex.open(Path.of(vault));
+			if (index.getLoadedCount() < 0) {
+				System.out.println("Índice dañado, se reconstruyó: " + Path.of(vault).resolve(FielIndex.DEFAULT_INDEX_NAME));
+			}
+			System.out.println("Certificados indexados: " + index.all().size() + ", leídos en este recorrido: " + index.getParsedCount());
+			return index;
+		}
+		String currentDirectory = System.getProperty("user.dir");
+		System.out.println("Buscando archivos key y cer en directorio actual: " + currentDirectory);
+		FielIndex index = new FielIndex(Path.of(currentDirectory), null, 1);
+		index.scan();
+		return index;
+	}
+
+	/**
+	 * Elige el par a convertir a partir del índice
+	 * @param vault directorio de la bóveda o null para el directorio actual
+	 * @param rfc RFC del par o null
+	 * @param serial número de certificado o de serie o null
+	 * @return FielIndex.Entry elegido o null si no hay ninguno
+	 */
+	private static FielIndex.Entry selectPair(String vault, String rfc, String serial) {
+		try {
+			FielIndex index = openIndex(vault);
+			if (serial != null) {
+				return index.findBySerial(serial).orElse(null);
+			}
+			long now = System.currentTimeMillis();
+			FielIndex.Entry entry;
+			if (rfc != null) {
+				List<FielIndex.Entry> found = index.findByRfc(rfc);
+				entry = found.stream().filter(e -> e.getKey() != null && e.isCurrent(now)).findFirst()
+						.or(() -> found.stream().filter(e -> e.getKey() != null).findFirst())
+						.orElse(found.isEmpty() ? null : found.get(0));
+			} else {
+				entry = index.bestPair(now).orElse(null);
+			}
+			if (entry != null && !entry.isCurrent(now)) {
+				System.out.println("Aviso: no hay un certificado vigente, se usa " + entry.getCer());
+			}
+			return entry;
+		} catch (IOException e) {
+			System.out.println("Error al indexar: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Muestra los certificados del índice que cumplen con los filtros
+	 * @param vault directorio de la bóveda o null para el directorio actual
+	 * @param rfc RFC o null
+	 * @param serial número de certificado o de serie o null
+	 * @param expiringDays días hasta el vencimiento, negativo para no filtrar
+	 */
+	private static void listVault(String vault, String rfc, String serial, int expiringDays) {
+		try {
+			FielIndex index = openIndex(vault);
+			Collection<FielIndex.Entry> entries;
+			if (serial != null) {
+				entries = index.findBySerial(serial).map(List::of).orElse(List.of());
+			} else if (rfc != null) {
+				entries = index.findByRfc(rfc);
+			} else if (expiringDays >= 0) {
+				entries = index.expiringBefore(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(expiringDays));
+			} else {
+				entries = index.all();
+			}
+			for (FielIndex.Entry entry : entries) {
+				if (entry.isValid()) {
+					System.out.println(entry);
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("Error al indexar: " + e.getMessage());
+			System.exit(1);
+		}
 	}
 	
 }
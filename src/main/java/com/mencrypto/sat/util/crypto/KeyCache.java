@@ -0,0 +1,231 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de llaves descifradas para procesos de larga duración.
+ * La entrada se identifica por el hash del contenido de la llave y del certificado, y guarda un
+ * verificador con sal de la contraseña, así una contraseña distinta nunca regresa la llave en caché.
+ * Las entradas se desalojan por tiempo de vida y por número máximo, la de acceso más antiguo primero.
+ * El mapa se ordena por acceso y solo se bloquea para consultarlo o modificarlo, el descifrado y la
+ * comparación de la contraseña ocurren fuera del candado.
+ * <pre>
+ * FielConverter converter = new FielConverter(new KeyCache(500, Duration.ofMinutes(30)));
+ * </pre>
+ * Las llaves que regresa el caché son compartidas. Al desalojarlas solo se suelta la referencia, no se
+ * destruyen: las llaves RSA de BouncyCastle no lo permiten y otro hilo puede seguir convirtiendo con
+ * la misma llave, su memoria se libera al recolectar la basura.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class KeyCache {
+
+	/**
+	 * Llave y certificado en caché
+	 */
+	public static final class Entry {
+		private final PrivateKey privateKey;
+		private final X509Certificate certificate;
+		private final byte[] salt;
+		private final byte[] verifier;
+		private final long expiresAt;
+
+		Entry(PrivateKey privateKey, X509Certificate certificate, byte[] salt, byte[] verifier, long expiresAt) {
+			this.privateKey = privateKey;
+			this.certificate = certificate;
+			this.salt = salt;
+			this.verifier = verifier;
+			this.expiresAt = expiresAt;
+		}
+
+		public PrivateKey getPrivateKey() {
+			return privateKey;
+		}
+
+		/**
+		 * @return X509Certificate o null si la llave se cargó sin certificado
+		 */
+		public X509Certificate getCertificate() {
+			return certificate;
+		}
+	}
+
+	/**
+	 * Carga la llave y el certificado cuando no están en caché
+	 */
+	interface Loader {
+		Entry load() throws IOException, GeneralSecurityException;
+	}
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final SecureRandom random = new SecureRandom();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxEntries número máximo de llaves en caché
+	 * @param ttl tiempo de vida de cada llave desde que se descifra
+	 * @throws IllegalArgumentException si algún valor no es positivo
+	 */
+	public KeyCache(int maxEntries, Duration ttl) {
+		if (maxEntries < 1 || ttl.isNegative() || ttl.isZero()) {
+			throw new IllegalArgumentException("El tamaño y el tiempo de vida del caché deben ser positivos");
+		}
+		this.maxEntries = maxEntries;
+		this.ttlNanos = ttl.toNanos();
+	}
+
+	/**
+	 * Regresa la entrada en caché o la carga con el loader si no existe, venció o la contraseña no coincide
+	 * @param key contenido de la llave
+	 * @param cer contenido del certificado, puede ser nulo
+	 * @param password contraseña de la llave
+	 * @param loader carga la llave y el certificado
+	 * @return Entry con la llave y el certificado
+	 * @throws IOException si el loader no puede leer las entradas
+	 * @throws GeneralSecurityException si la contraseña es incorrecta o la llave no es válida
+	 */
+	Entry get(byte[] key, byte[] cer, char[] password, Loader loader) throws IOException, GeneralSecurityException {
+		return get(key, key.length, cer, (cer == null) ? 0 : cer.length, password, loader);
+	}
+
+	/**
+	 * Igual que {@link #get(byte[], byte[], char[], Loader)} con el contenido en los primeros bytes de cada arreglo,
+	 * para usar los buffers reutilizables de la lectura sin copiarlos
+	 */
+	Entry get(byte[] key, int keyLength, byte[] cer, int cerLength, char[] password, Loader loader)
+			throws IOException, GeneralSecurityException {
+		String id = id(key, keyLength, cer, cerLength);
+		long now = System.nanoTime();
+		Entry cached;
+		synchronized (entries) {
+			cached = entries.get(id);
+			if (cached != null && now - cached.expiresAt >= 0) {
+				entries.remove(id);
+				evictions.increment();
+				cached = null;
+			}
+		}
+		if (cached != null && MessageDigest.isEqual(cached.verifier, verifier(cached.salt, password))) {
+			hits.increment();
+			return cached;
+		}
+		misses.increment();
+		Entry loaded = loader.load();
+		byte[] salt = new byte[16];
+		random.nextBytes(salt);
+		Entry entry = new Entry(loaded.privateKey, loaded.certificate, salt, verifier(salt, password), now + ttlNanos);
+		synchronized (entries) {
+			// Si otro hilo la cargó primero, o era de otra contraseña, se conserva la anterior
+			if (entries.putIfAbsent(id, entry) == null) {
+				trim(now);
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Crea la entrada que regresa un {@link Loader}
+	 * @param privateKey llave descifrada
+	 * @param certificate certificado o null
+	 * @return Entry sin verificador
+	 */
+	static Entry loaded(PrivateKey privateKey, X509Certificate certificate) {
+		return new Entry(privateKey, certificate, EMPTY, EMPTY, 0);
+	}
+
+	/**
+	 * Quita desde la de acceso más antiguo las entradas que sobran o que vencieron, cada paso es O(1).
+	 * Se llama con el candado de entries
+	 */
+	private void trim(long now) {
+		Iterator<Entry> oldest = entries.values().iterator();
+		while (oldest.hasNext()) {
+			Entry entry = oldest.next();
+			if (entries.size() <= maxEntries && now - entry.expiresAt < 0) {
+				return;
+			}
+			oldest.remove();
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * Quita todas las entradas
+	 */
+	public void clear() {
+		synchronized (entries) {
+			evictions.add(entries.size());
+			entries.clear();
+		}
+	}
+
+	private static String id(byte[] key, int keyLength, byte[] cer, int cerLength) throws NoSuchAlgorithmException {
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		md.update(key, 0, keyLength);
+		byte[] keyHash = md.digest();
+		md.update((cer == null) ? EMPTY : cer, 0, cerLength);
+		byte[] cerHash = md.digest();
+		Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+		return encoder.encodeToString(keyHash) + encoder.encodeToString(cerHash);
+	}
+
+	private static byte[] verifier(byte[] salt, char[] password) throws NoSuchAlgorithmException {
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		md.update(salt);
+		ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+		md.update(bytes.duplicate());
+		if (bytes.hasArray()) {
+			Arrays.fill(bytes.array(), (byte) 0);
+		}
+		return md.digest();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return int número de llaves en caché
+	 */
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "KeyCache[entradas=" + size() + ", aciertos=" + getHits() + ", fallos=" + getMisses() + ", desalojos="
+				+ getEvictions() + "]";
+	}
+}
@@ -0,0 +1,19 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.security.InvalidKeyException;
+
+/**
+ * La llave privada no corresponde a la llave pública del certificado con el que se quiere guardar,
+ * se lanza antes de escribir cualquier salida
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public class KeyMismatchException extends InvalidKeyException {
+
+	private static final long serialVersionUID = 1L;
+
+	public KeyMismatchException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,320 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Migra muchos KeyStore existentes, por ejemplo los jks de ejecuciones anteriores, al formato indicado
+ * cifrando de nuevo cada llave con otra contraseña y perfil de protección. Los archivos se procesan en
+ * paralelo, cada uno se escribe en un temporal, se verifica abriéndolo con la nueva contraseña y se renombra
+ * de forma atómica. Cada archivo terminado se anota en una bitácora, así una ejecución interrumpida
+ * continúa donde se quedó.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class KeyStoreMigrator {
+
+	/**
+	 * Estado de la migración de un archivo
+	 */
+	public enum Status {
+		/** Se escribió el KeyStore destino */
+		MIGRATED,
+		/** La bitácora lo marca como terminado o ya tiene la nueva contraseña */
+		SKIPPED,
+		/** No se pudo migrar, el archivo original no se tocó */
+		FAILED
+	}
+
+	/**
+	 * Resultado de la migración de un archivo
+	 */
+	public static final class FileResult {
+		private final Path source;
+		private final Path target;
+		private final Status status;
+		private final int entries;
+		private final String message;
+
+		FileResult(Path source, Path target, Status status, int entries, String message) {
+			this.source = source;
+			this.target = target;
+			this.status = status;
+			this.entries = entries;
+			this.message = message;
+		}
+
+		public Path getSource() {
+			return source;
+		}
+
+		public Path getTarget() {
+			return target;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		public int getEntries() {
+			return entries;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+	}
+
+	private static final String JOURNAL_OK = "OK";
+	private static final String JOURNAL_ERROR = "ERROR";
+
+	private final OutputFormat sourceFormat;
+	private final OutputFormat targetFormat;
+	private final char[] oldPassword;
+	private final char[] newPassword;
+	private final ProtectionProfile profile;
+	private final int threads;
+	private final boolean deleteSource;
+
+	/**
+	 * @param sourceFormat formato de los archivos a migrar, P12 incluye la extensión .pfx
+	 * @param targetFormat formato destino, si es el mismo que el origen el archivo se reemplaza
+	 * @param oldPassword contraseña actual de los KeyStore y de sus llaves
+	 * @param newPassword contraseña nueva, si es nula se conserva la actual
+	 * @param profile perfil de protección de los p12 destino
+	 * @param threads número de hilos, si es menor a 1 se usa el número de núcleos
+	 * @param deleteSource si se borra el archivo original cuando el destino tiene otra extensión
+	 * @throws IllegalArgumentException si algún formato es PEM
+	 */
+	public KeyStoreMigrator(OutputFormat sourceFormat, OutputFormat targetFormat, char[] oldPassword, char[] newPassword,
+			ProtectionProfile profile, int threads, boolean deleteSource) {
+		if (sourceFormat == OutputFormat.PEM || targetFormat == OutputFormat.PEM) {
+			throw new IllegalArgumentException("Solo se pueden migrar KeyStore p12 o jks");
+		}
+		this.sourceFormat = sourceFormat;
+		this.targetFormat = targetFormat;
+		this.oldPassword = oldPassword;
+		this.newPassword = (newPassword == null) ? oldPassword : newPassword;
+		this.profile = profile;
+		this.threads = (threads < 1) ? Runtime.getRuntime().availableProcessors() : threads;
+		this.deleteSource = deleteSource;
+	}
+
+	/**
+	 * Busca los KeyStore del formato de origen
+	 * @param path archivo o directorio que se recorre de forma recursiva
+	 * @return List de archivos ordenados por ruta
+	 * @throws IOException si no se puede recorrer el directorio
+	 */
+	public List<Path> find(Path path) throws IOException {
+		if (Files.isRegularFile(path)) {
+			return List.of(path);
+		}
+		try (Stream<Path> files = Files.walk(path)) {
+			return files.filter(Files::isRegularFile).filter(this::isSource).sorted().collect(Collectors.toList());
+		}
+	}
+
+	private boolean isSource(Path file) {
+		String name = file.getFileName().toString().toLowerCase();
+		if (sourceFormat == OutputFormat.JKS) {
+			return name.endsWith(".jks");
+		}
+		return name.endsWith(".p12") || name.endsWith(".pfx");
+	}
+
+	/**
+	 * Migra los archivos en paralelo, los que la bitácora marca como terminados se omiten. Si se interrumpe
+	 * la espera se cancelan los archivos pendientes y se espera a los que están en curso antes de cerrar la
+	 * bitácora, así cada archivo terminado queda anotado completo
+	 * @param files KeyStore a migrar
+	 * @param journal bitácora de avance, se crea si no existe, o null para no usarla
+	 * @return List con el resultado de cada archivo en el mismo orden de entrada
+	 * @throws IOException si no se puede leer o escribir la bitácora
+	 * @throws InterruptedException si se interrumpe la espera de la migración
+	 */
+	public List<FileResult> run(List<Path> files, Path journal) throws IOException, InterruptedException {
+		Set<String> done = (journal == null) ? Collections.emptySet() : readJournal(journal);
+		try (BufferedWriter log = (journal == null) ? null
+				: Files.newBufferedWriter(journal, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			return ParallelRunner.run(files, threads, "fiel-migrate",
+					file -> done.contains(file.toAbsolutePath().normalize().toString())
+							? new FileResult(file, target(file), Status.SKIPPED, 0, "Terminado en la bitácora")
+							: journaled(migrate(file), log),
+					(file, error) -> new FileResult(file, null, Status.FAILED, 0, String.valueOf(error)));
+		}
+	}
+
+	/**
+	 * Lee las rutas terminadas de la bitácora, una línea por archivo con el estado y la ruta separados por tabulador
+	 */
+	private static Set<String> readJournal(Path journal) throws IOException {
+		Set<String> done = new HashSet<>();
+		if (!Files.isRegularFile(journal)) {
+			return done;
+		}
+		try (Stream<String> lines = Files.lines(journal, StandardCharsets.UTF_8)) {
+			lines.forEach(line -> {
+				String[] fields = line.split("\t", 3);
+				if (fields.length >= 2 && JOURNAL_OK.equals(fields[0])) {
+					done.add(fields[1]);
+				}
+			});
+		}
+		return done;
+	}
+
+	/**
+	 * Anota el resultado en la bitácora y la vacía a disco, así una interrupción pierde a lo más los archivos en curso
+	 */
+	private static FileResult journaled(FileResult result, BufferedWriter log) throws IOException {
+		if (log == null) {
+			return result;
+		}
+		String status = (result.getStatus() == Status.FAILED) ? JOURNAL_ERROR : JOURNAL_OK;
+		String line = status + "\t" + result.getSource().toAbsolutePath().normalize() + "\t"
+				+ result.getMessage().replace('\t', ' ').replace('\n', ' ');
+		synchronized (log) {
+			log.write(line);
+			log.newLine();
+			log.flush();
+		}
+		return result;
+	}
+
+	/**
+	 * Migra un archivo atrapando cualquier error para que no afecte al resto
+	 */
+	FileResult migrate(Path source) {
+		Path target = target(source);
+		try {
+			KeyStore keyStore;
+			try {
+				keyStore = load(source, oldPassword);
+			} catch (UnrecoverableKeyException e) {
+				// Si una ejecución anterior se interrumpió después de reemplazar el archivo ya tiene la nueva contraseña
+				if (source.equals(target) && newPassword != oldPassword && opens(source, newPassword)) {
+					return new FileResult(source, target, Status.SKIPPED, 0, "Ya tiene la nueva contraseña");
+				}
+				throw e;
+			}
+			List<Pkcs12Writer.Entry> entries = new ArrayList<>(keyStore.size());
+			for (String alias : Collections.list(keyStore.aliases())) {
+				if (!keyStore.isKeyEntry(alias)) {
+					throw new GeneralSecurityException("La entrada " + alias + " no es de llave privada");
+				}
+				Key key = keyStore.getKey(alias, oldPassword);
+				if (!(key instanceof PrivateKey)) {
+					throw new GeneralSecurityException("La entrada " + alias + " no es de llave privada");
+				}
+				Certificate[] chain = keyStore.getCertificateChain(alias);
+				if (chain == null || chain.length == 0) {
+					throw new GeneralSecurityException("La entrada " + alias + " no tiene certificado");
+				}
+				entries.add(new Pkcs12Writer.Entry(alias, (PrivateKey) key, chain));
+			}
+			write(entries, source, target);
+			if (deleteSource && !source.equals(target)) {
+				Files.deleteIfExists(source);
+			}
+			return new FileResult(source, target, Status.MIGRATED, entries.size(), "");
+		} catch (IOException | GeneralSecurityException e) {
+			return new FileResult(source, target, Status.FAILED, 0, ConversionMetrics.failure(e) + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Abre el KeyStore detectando su tipo, una contraseña incorrecta se reporta como {@link UnrecoverableKeyException}
+	 */
+	private static KeyStore load(Path path, char[] password) throws IOException, GeneralSecurityException {
+		try {
+			return KeyStore.getInstance(path.toFile(), password);
+		} catch (IOException e) {
+			if (e.getCause() instanceof UnrecoverableKeyException) {
+				throw (UnrecoverableKeyException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static boolean opens(Path path, char[] password) {
+		try {
+			load(path, password);
+			return true;
+		} catch (IOException | GeneralSecurityException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Escribe las entradas en un temporal del directorio destino, lo verifica con la nueva contraseña
+	 * y lo renombra sobre el destino
+	 */
+	private void write(List<Pkcs12Writer.Entry> entries, Path source, Path target) throws IOException, GeneralSecurityException {
+		Path dir = target.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+		try {
+			try {
+				Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(source));
+			} catch (UnsupportedOperationException e) {
+				// En sistemas sin permisos POSIX se conservan los del temporal
+			}
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				if (targetFormat == OutputFormat.P12) {
+					ConversionMetrics.time(ConversionMetrics.Stage.STORE, () -> {
+						Pkcs12Writer.write(entries, newPassword, profile, out);
+						return null;
+					});
+				} else {
+					KeyStore keyStore = KeyStore.getInstance("JKS");
+					keyStore.load(null, null);
+					for (Pkcs12Writer.Entry entry : entries) {
+						keyStore.setKeyEntry(entry.alias, entry.key, newPassword, entry.chain);
+					}
+					ConversionMetrics.time(ConversionMetrics.Stage.STORE, () -> {
+						keyStore.store(out, newPassword);
+						return null;
+					});
+				}
+			}
+			KeyStore written = load(temp, newPassword);
+			if (written.size() != entries.size()) {
+				throw new GeneralSecurityException("El KeyStore escrito tiene " + written.size() + " entradas de " + entries.size());
+			}
+			FielIndex.moveAtomically(temp, target);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Ruta destino: la misma si el formato no cambia o la misma ruta con la extensión del formato destino
+	 */
+	Path target(Path source) {
+		if (sourceFormat == targetFormat) {
+			return source;
+		}
+		String name = source.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		return source.resolveSibling(((dot < 0) ? name : name.substring(0, dot)) + targetFormat.getExtension());
+	}
+}
@@ -0,0 +1,186 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Actualiza un KeyStore PKCS12 o JKS con muchas entradas, una por RFC, sin reconstruirlo.
+ * Se usa la implementación del JDK porque conserva los bytes cifrados de las llaves que ya
+ * existen y los escribe tal cual, así solo se descifran y cifran las llaves de los pares
+ * nuevos o renovados. El archivo se reemplaza de forma atómica con un temporal.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class KeyStoreUpdater {
+
+	/**
+	 * Cambio aplicado al agregar un par
+	 */
+	public enum Change {
+		ADDED, REPLACED, UNCHANGED
+	}
+
+	private final Path path;
+	private final OutputFormat format;
+	private final char[] password;
+	private final FielConverter converter;
+	private KeyStore keyStore;
+	private boolean modified;
+
+	/**
+	 * @param path ruta del KeyStore, si no existe se crea al guardar
+	 * @param format P12 o JKS
+	 * @param password contraseña del KeyStore y de sus llaves
+	 * @throws IllegalArgumentException si el formato es PEM
+	 */
+	public KeyStoreUpdater(Path path, OutputFormat format, char[] password) {
+		if (format == OutputFormat.PEM) {
+			throw new IllegalArgumentException("Solo se pueden actualizar KeyStore p12 o jks");
+		}
+		this.path = path;
+		this.format = format;
+		this.password = password;
+		this.converter = FielConverter.getDefault();
+	}
+
+	/**
+	 * Abre el KeyStore existente o crea uno vacío si el archivo no existe
+	 * @throws IOException si no se puede leer o la contraseña es incorrecta
+	 * @throws GeneralSecurityException si el formato no es válido
+	 */
+	public void open() throws IOException, GeneralSecurityException {
+		keyStore = KeyStore.getInstance(format == OutputFormat.JKS ? "JKS" : "PKCS12");
+		if (Files.isRegularFile(path)) {
+			try (InputStream in = Files.newInputStream(path)) {
+				keyStore.load(in, password);
+			}
+		} else {
+			keyStore.load(null, null);
+		}
+		modified = false;
+	}
+
+	/**
+	 * Agrega o reemplaza la entrada del RFC del certificado. Si el alias ya tiene el mismo
+	 * certificado no se descifra la llave y la entrada no se toca
+	 * @param key llave privada PKCS#8 cifrada
+	 * @param cer certificado X.509
+	 * @param keyPassword contraseña de la llave
+	 * @return Change aplicado
+	 * @throws IOException si no se pueden leer los archivos
+	 * @throws GeneralSecurityException si la contraseña es incorrecta o la llave no es válida
+	 */
+	public Change put(Path key, Path cer, char[] keyPassword) throws IOException, GeneralSecurityException {
+		X509Certificate cert = converter.loadCertificate(cer.toFile());
+		String alias = converter.getRFC(cert);
+		Change change = Change.ADDED;
+		if (keyStore.isKeyEntry(alias)) {
+			Certificate current = keyStore.getCertificate(alias);
+			if (current != null && Arrays.equals(current.getEncoded(), cert.getEncoded())) {
+				return Change.UNCHANGED;
+			}
+			change = Change.REPLACED;
+		}
+		PrivateKey privateKey = converter.loadPrivateKey(key.toFile(), keyPassword);
+		FielConverter.checkKeyMatches(privateKey, cert.getPublicKey());
+		keyStore.setKeyEntry(alias, privateKey, password, new Certificate[] { cert });
+		modified = true;
+		return change;
+	}
+
+	/**
+	 * @param alias alias a eliminar
+	 * @return boolean true si el alias existía
+	 * @throws GeneralSecurityException si no se puede eliminar
+	 */
+	public boolean remove(String alias) throws GeneralSecurityException {
+		if (!keyStore.containsAlias(alias)) {
+			return false;
+		}
+		keyStore.deleteEntry(alias);
+		modified = true;
+		return true;
+	}
+
+	/**
+	 * Elimina las entradas cuyo certificado venció, solo se lee el certificado de cada alias
+	 * @param now fecha de referencia
+	 * @return List con los alias eliminados
+	 * @throws GeneralSecurityException si no se pueden leer las entradas
+	 */
+	public List<String> pruneExpired(Date now) throws GeneralSecurityException {
+		List<String> expired = new ArrayList<>();
+		for (String alias : Collections.list(keyStore.aliases())) {
+			Certificate cert = keyStore.getCertificate(alias);
+			if (cert instanceof X509Certificate && ((X509Certificate) cert).getNotAfter().before(now)) {
+				expired.add(alias);
+			}
+		}
+		for (String alias : expired) {
+			keyStore.deleteEntry(alias);
+		}
+		modified |= !expired.isEmpty();
+		return expired;
+	}
+
+	/**
+	 * @return int número de entradas del KeyStore
+	 * @throws GeneralSecurityException si el KeyStore no está abierto
+	 */
+	public int size() throws GeneralSecurityException {
+		return keyStore.size();
+	}
+
+	/**
+	 * @return boolean true si hay cambios sin guardar
+	 */
+	public boolean isModified() {
+		return modified;
+	}
+
+	/**
+	 * Guarda el KeyStore en un temporal del mismo directorio y lo renombra sobre el original,
+	 * si no hubo cambios no se escribe nada
+	 * @return boolean true si se escribió el archivo
+	 * @throws IOException si no se puede escribir
+	 * @throws GeneralSecurityException si no se puede proteger el KeyStore
+	 */
+	public boolean save() throws IOException, GeneralSecurityException {
+		if (!modified && Files.isRegularFile(path)) {
+			return false;
+		}
+		Path dir = path.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+		try {
+			if (Files.isRegularFile(path)) {
+				try {
+					Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(path));
+				} catch (UnsupportedOperationException e) {
+					// En sistemas sin permisos POSIX se conservan los del temporal
+				}
+			}
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				keyStore.store(out, password);
+			}
+			FielIndex.moveAtomically(temp, path);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		modified = false;
+		return true;
+	}
+}
@@ -0,0 +1,334 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Obtiene la lista de pares llave/certificado que se procesan en modo por lote
+ * a partir de un directorio o de un manifiesto CSV o JSON.
+ * <p>
+ * El manifiesto CSV tiene las columnas {@code key,cer,password,format}, las líneas que
+ * inician con # se ignoran y la primera línea puede ser el encabezado. El manifiesto JSON
+ * es un arreglo de objetos con las mismas propiedades. Las rutas relativas se resuelven
+ * contra el directorio del manifiesto. Un renglón con un formato desconocido o un texto mal
+ * escapado no detiene la lectura, se regresa como un par con error para que aparezca como
+ * falla en el reporte.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class ManifestReader {
+
+	private ManifestReader() {
+	}
+
+	/**
+	 * Lee los pares de un directorio o de un manifiesto
+	 * @param source ruta de un directorio o de un archivo .csv o .json
+	 * @param defaultFormat formato que se usa cuando el manifiesto no lo indica
+	 * @return List con los pares encontrados en el orden en que aparecen
+	 * @throws IOException si no se puede leer el origen
+	 */
+	public static List<FielPair> read(Path source, OutputFormat defaultFormat) throws IOException {
+		if (Files.isDirectory(source)) {
+			return scanDirectory(source, defaultFormat);
+		}
+		String name = source.getFileName().toString().toLowerCase();
+		if (name.endsWith(".json")) {
+			return readJson(source, defaultFormat);
+		}
+		return readCsv(source, defaultFormat);
+	}
+
+	/**
+	 * Recorre un árbol de directorios y forma los pares por carpeta, si la carpeta tiene
+	 * una sola llave y un solo certificado se toman como pareja, de otra forma se emparejan
+	 * por nombre base. Los archivos sin pareja se regresan con el lado faltante en nulo
+	 * para que aparezcan como error en el reporte.
+	 * @param root directorio raíz
+	 * @param format formato de salida de todos los pares
+	 * @return List con los pares ordenados por ruta
+	 * @throws IOException si no se puede recorrer el directorio
+	 */
+	static List<FielPair> scanDirectory(Path root, OutputFormat format) throws IOException {
+		Map<Path, List<Path>> byDirectory = new TreeMap<>();
+		try (Stream<Path> files = Files.walk(root)) {
+			for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+				String name = file.getFileName().toString().toLowerCase();
+				if (name.endsWith(".key") || name.endsWith(".cer")) {
+					byDirectory.computeIfAbsent(file.getParent(), k -> new ArrayList<>()).add(file);
+				}
+			}
+		}
+		List<FielPair> pairs = new ArrayList<>();
+		for (List<Path> files : byDirectory.values()) {
+			List<Path> keys = new ArrayList<>(), cers = new ArrayList<>();
+			for (Path file : files) {
+				(file.getFileName().toString().toLowerCase().endsWith(".key") ? keys : cers).add(file);
+			}
+			keys.sort(null);
+			cers.sort(null);
+			if (keys.size() == 1 && cers.size() == 1) {
+				pairs.add(new FielPair(keys.get(0).toFile(), cers.get(0).toFile(), null, format));
+				continue;
+			}
+			for (Path key : keys) {
+				Path cer = removeByBaseName(cers, baseName(key));
+				pairs.add(new FielPair(key.toFile(), cer == null ? null : cer.toFile(), null, format));
+			}
+			for (Path cer : cers) {
+				pairs.add(new FielPair(null, cer.toFile(), null, format));
+			}
+		}
+		return pairs;
+	}
+
+	private static Path removeByBaseName(List<Path> files, String baseName) {
+		for (Iterator<Path> it = files.iterator(); it.hasNext();) {
+			Path file = it.next();
+			if (baseName(file).equals(baseName)) {
+				it.remove();
+				return file;
+			}
+		}
+		return null;
+	}
+
+	private static String baseName(Path file) {
+		String name = file.getFileName().toString();
+		int idx = name.lastIndexOf('.');
+		return idx < 0 ? name : name.substring(0, idx);
+	}
+
+	/**
+	 * Lee un manifiesto CSV con las columnas key,cer,password,format
+	 */
+	static List<FielPair> readCsv(Path manifest, OutputFormat defaultFormat) throws IOException {
+		List<FielPair> pairs = new ArrayList<>();
+		Path baseDir = manifest.toAbsolutePath().getParent();
+		try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+			String line;
+			boolean first = true;
+			while ((line = reader.readLine()) != null) {
+				String trimmed = line.trim();
+				if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+					continue;
+				}
+				List<String> columns = splitCsv(trimmed);
+				if (first && "key".equalsIgnoreCase(columns.get(0))) {
+					first = false;
+					continue;
+				}
+				first = false;
+				pairs.add(toPair(baseDir, column(columns, 0), column(columns, 1), column(columns, 2),
+						column(columns, 3), defaultFormat));
+			}
+		}
+		return pairs;
+	}
+
+	private static String column(List<String> columns, int idx) {
+		return idx < columns.size() ? columns.get(idx) : null;
+	}
+
+	/**
+	 * Separa una línea CSV por comas respetando valores entre comillas dobles
+	 */
+	private static List<String> splitCsv(String line) {
+		List<String> columns = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					current.append('"');
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if (c == ',' && !quoted) {
+				columns.add(current.toString().trim());
+				current.setLength(0);
+			} else {
+				current.append(c);
+			}
+		}
+		columns.add(current.toString().trim());
+		return columns;
+	}
+
+	/**
+	 * Lee un manifiesto JSON con un arreglo de objetos con las propiedades key, cer, password y format
+	 */
+	static List<FielPair> readJson(Path manifest, OutputFormat defaultFormat) throws IOException {
+		Path baseDir = manifest.toAbsolutePath().getParent();
+		JsonScanner scanner = new JsonScanner(Files.readString(manifest, StandardCharsets.UTF_8));
+		List<FielPair> pairs = new ArrayList<>();
+		scanner.expect('[');
+		if (scanner.consumeIf(']')) {
+			return pairs;
+		}
+		do {
+			Map<String, String> entry = new HashMap<>();
+			scanner.rowError = null;
+			scanner.expect('{');
+			if (!scanner.consumeIf('}')) {
+				do {
+					String name = scanner.string();
+					scanner.expect(':');
+					entry.put(name, scanner.value());
+				} while (scanner.consumeIf(','));
+				scanner.expect('}');
+			}
+			if (scanner.rowError != null) {
+				pairs.add(FielPair.invalid(resolve(baseDir, entry.get("key")), resolve(baseDir, entry.get("cer")),
+						defaultFormat, scanner.rowError));
+			} else {
+				pairs.add(toPair(baseDir, entry.get("key"), entry.get("cer"), entry.get("password"),
+						entry.get("format"), defaultFormat));
+			}
+		} while (scanner.consumeIf(','));
+		scanner.expect(']');
+		return pairs;
+	}
+
+	private static FielPair toPair(Path baseDir, String key, String cer, String password, String format,
+			OutputFormat defaultFormat) {
+		OutputFormat outputFormat = defaultFormat;
+		if (!empty(format)) {
+			try {
+				outputFormat = OutputFormat.parse(format);
+			} catch (IllegalArgumentException e) {
+				return FielPair.invalid(resolve(baseDir, key), resolve(baseDir, cer), defaultFormat,
+						"Formato de salida desconocido: " + format);
+			}
+		}
+		return new FielPair(resolve(baseDir, key), resolve(baseDir, cer), empty(password) ? null : password,
+				outputFormat);
+	}
+
+	private static File resolve(Path baseDir, String path) {
+		if (empty(path)) {
+			return null;
+		}
+		return baseDir.resolve(path).toFile();
+	}
+
+	private static boolean empty(String value) {
+		return value == null || value.isEmpty();
+	}
+
+	/**
+	 * Lector mínimo de JSON para el manifiesto, solo admite valores de texto, números,
+	 * booleanos y null dentro de objetos planos
+	 */
+	private static final class JsonScanner {
+		private final String text;
+		private int pos;
+		/** Error del objeto actual que no impide seguir leyendo el resto del manifiesto */
+		private String rowError;
+
+		JsonScanner(String text) {
+			this.text = text;
+		}
+
+		private void skipWhitespace() {
+			while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+				pos++;
+			}
+		}
+
+		void expect(char c) throws IOException {
+			if (!consumeIf(c)) {
+				throw new IOException("Manifiesto JSON inválido, se esperaba '" + c + "' en la posición " + pos);
+			}
+		}
+
+		boolean consumeIf(char c) {
+			skipWhitespace();
+			if (pos < text.length() && text.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		String value() throws IOException {
+			skipWhitespace();
+			if (pos < text.length() && text.charAt(pos) == '"') {
+				return string();
+			}
+			int start = pos;
+			while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+				pos++;
+			}
+			String literal = text.substring(start, pos);
+			if (literal.isEmpty()) {
+				throw new IOException("Manifiesto JSON inválido, valor vacío en la posición " + start);
+			}
+			return "null".equals(literal) ? null : literal;
+		}
+
+		String string() throws IOException {
+			expect('"');
+			StringBuilder sb = new StringBuilder();
+			while (pos < text.length()) {
+				char c = text.charAt(pos++);
+				if (c == '"') {
+					return sb.toString();
+				}
+				if (c != '\\') {
+					sb.append(c);
+					continue;
+				}
+				if (pos >= text.length()) {
+					break;
+				}
+				char escaped = text.charAt(pos++);
+				switch (escaped) {
+				case 'n': sb.append('\n'); break;
+				case 't': sb.append('\t'); break;
+				case 'r': sb.append('\r'); break;
+				case 'b': sb.append('\b'); break;
+				case 'f': sb.append('\f'); break;
+				case 'u':
+					if (pos + 4 > text.length()) {
+						throw new IOException("Manifiesto JSON inválido, escape unicode incompleto");
+					}
+					int code = 0;
+					for (int i = pos; i < pos + 4 && code >= 0; i++) {
+						char hex = text.charAt(i);
+						int digit = (hex < 0x80) ? Character.digit(hex, 16) : -1;
+						code = (digit < 0) ? -1 : (code << 4) | digit;
+					}
+					if (code < 0) {
+						// Se deja el texto como está para seguir leyendo, el renglón se reporta con el error
+						if (rowError == null) {
+							rowError = "Escape unicode inválido \\u" + text.substring(pos, pos + 4) + " en la posición " + (pos - 2);
+						}
+						sb.append('\\').append('u');
+						break;
+					}
+					sb.append((char) code);
+					pos += 4;
+					break;
+				default: sb.append(escaped);
+				}
+			}
+			throw new IOException("Manifiesto JSON inválido, texto sin cerrar");
+		}
+	}
+}
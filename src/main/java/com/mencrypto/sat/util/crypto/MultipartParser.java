@@ -0,0 +1,148 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lector mínimo de cuerpos multipart/form-data, solo obtiene el nombre y el contenido de cada parte
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+final class MultipartParser {
+
+	private MultipartParser() {
+	}
+
+	/**
+	 * Obtiene el boundary del encabezado Content-Type
+	 * @param contentType valor del encabezado
+	 * @return String boundary o null si no es multipart/form-data
+	 */
+	static String boundary(String contentType) {
+		if (contentType == null || !contentType.toLowerCase().startsWith("multipart/form-data")) {
+			return null;
+		}
+		for (String param : contentType.split(";")) {
+			String trimmed = param.trim();
+			if (trimmed.toLowerCase().startsWith("boundary=")) {
+				String value = trimmed.substring(9);
+				return value.startsWith("\"") ? value.substring(1, value.length() - 1) : value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Separa el cuerpo en sus partes
+	 * @param body cuerpo completo de la petición
+	 * @param boundary boundary del Content-Type
+	 * @return Map con el nombre de cada parte y su contenido
+	 * @throws IOException si el cuerpo no tiene el formato esperado
+	 */
+	static Map<String, byte[]> parse(byte[] body, String boundary) throws IOException {
+		byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.US_ASCII);
+		byte[] headerEnd = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+		Map<String, byte[]> parts = new HashMap<>();
+		int pos = indexOf(body, delimiter, 0);
+		if (pos < 0) {
+			throw new IOException("El cuerpo no contiene el boundary indicado");
+		}
+		while (true) {
+			pos += delimiter.length;
+			if (pos + 1 < body.length && body[pos] == '-' && body[pos + 1] == '-') {
+				return parts;
+			}
+			int headersStart = pos + 2;
+			int headersEnd = indexOf(body, headerEnd, headersStart);
+			if (headersEnd < 0) {
+				throw new IOException("Parte sin encabezados");
+			}
+			int next = indexOf(body, delimiter, headersEnd + headerEnd.length);
+			if (next < 0) {
+				throw new IOException("Parte sin cerrar");
+			}
+			String headers = new String(body, headersStart, headersEnd - headersStart, StandardCharsets.UTF_8);
+			String name = partName(headers);
+			// El contenido termina antes del CRLF que precede al siguiente delimitador
+			int contentStart = headersEnd + headerEnd.length;
+			int contentEnd = next - 2;
+			if (name != null && contentEnd >= contentStart) {
+				byte[] content = new byte[contentEnd - contentStart];
+				System.arraycopy(body, contentStart, content, 0, content.length);
+				parts.put(name, content);
+			}
+			pos = next;
+		}
+	}
+
+	/**
+	 * Obtiene el parámetro name del encabezado Content-Disposition, los parámetros se separan por ';' fuera de
+	 * comillas para no confundir name con filename ni con un ';' dentro de un valor entre comillas
+	 */
+	static String partName(String headers) {
+		for (String line : headers.split("\r\n")) {
+			int colon = line.indexOf(':');
+			if (colon < 0 || !line.substring(0, colon).trim().equalsIgnoreCase("content-disposition")) {
+				continue;
+			}
+			return parameters(line.substring(colon + 1)).get("name");
+		}
+		return null;
+	}
+
+	/**
+	 * Separa los parámetros de un encabezado, el primer token (form-data) no tiene valor y se omite
+	 * @param value valor del encabezado
+	 * @return Map con el nombre del parámetro en minúsculas y su valor sin comillas
+	 */
+	private static Map<String, String> parameters(String value) {
+		Map<String, String> parameters = new HashMap<>();
+		int pos = value.indexOf(';');
+		while (pos >= 0 && pos < value.length()) {
+			int equals = value.indexOf('=', pos + 1);
+			int next = value.indexOf(';', pos + 1);
+			if (equals < 0 || (next >= 0 && next < equals)) {
+				pos = next;
+				continue;
+			}
+			String name = value.substring(pos + 1, equals).trim().toLowerCase();
+			int start = equals + 1;
+			while (start < value.length() && value.charAt(start) == ' ') {
+				start++;
+			}
+			StringBuilder sb = new StringBuilder();
+			if (start < value.length() && value.charAt(start) == '"') {
+				int i = start + 1;
+				while (i < value.length() && value.charAt(i) != '"') {
+					if (value.charAt(i) == '\\' && i + 1 < value.length()) {
+						i++;
+					}
+					sb.append(value.charAt(i++));
+				}
+				next = value.indexOf(';', i);
+			} else {
+				next = value.indexOf(';', start);
+				sb.append(value.substring(start, (next < 0) ? value.length() : next).trim());
+			}
+			parameters.putIfAbsent(name, sb.toString());
+			pos = next;
+		}
+		return parameters;
+	}
+
+	private static int indexOf(byte[] data, byte[] pattern, int from) {
+		outer:
+		for (int i = from; i <= data.length - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (data[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+}
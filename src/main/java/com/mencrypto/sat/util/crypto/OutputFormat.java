@@ -0,0 +1,47 @@
+package com.mencrypto.sat.util.crypto;
+
+/**
+ * Formatos de salida soportados al convertir una FIEL del SAT
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public enum OutputFormat {
+
+	/** Almacén de llaves PKCS12 (pfx o p12) */
+	P12(".p12"),
+	/** Java Key Store */
+	JKS(".jks"),
+	/** Llave y certificado en formato PEM sin contraseña */
+	PEM(".pem");
+
+	private final String extension;
+
+	OutputFormat(String extension) {
+		this.extension = extension;
+	}
+
+	/**
+	 * @return String extensión con punto que se usa para el archivo generado
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Obtiene el formato a partir de su nombre sin importar mayúsculas,
+	 * acepta también pfx como sinónimo de p12
+	 * @param value nombre del formato, si es nulo o vacío se regresa P12
+	 * @return OutputFormat correspondiente
+	 */
+	public static OutputFormat parse(String value) {
+		if (value == null || value.isBlank()) {
+			return P12;
+		}
+		String normalized = value.trim().toUpperCase();
+		if ("PFX".equals(normalized) || "PKCS12".equals(normalized)) {
+			return P12;
+		}
+		return OutputFormat.valueOf(normalized);
+	}
+}
@@ -0,0 +1,237 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PrivateKey;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertPathValidatorException.BasicReason;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revisión previa de pares de FIEL sin generar KeyStore: descifra la llave una sola vez, comprueba que
+ * corresponde a la llave pública del certificado y obtiene el RFC y la vigencia. Sirve para separar en un
+ * lote grande los pares con contraseña incorrecta, llave de otro certificado o certificado vencido antes
+ * de hacer las conversiones, que son más costosas. Los pares se revisan en paralelo y no se escribe nada
+ * más que el reporte.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class PairVerifier {
+
+	private final FielConverter converter;
+	private final int threads;
+	private final char[] defaultPassword;
+	private final ChainValidator validator;
+
+	/**
+	 * Las contraseñas no se copian ni se limpian, el llamador la limpia cuando termina {@link #run(List, Path)}
+	 * @param threads número de hilos de trabajo, si es menor a 1 se usa el número de núcleos
+	 * @param defaultPassword contraseña de la llave que se usa cuando el par no indica una fuente
+	 * @param validator valida la cadena del certificado además de la vigencia, si es nulo solo se revisa la vigencia
+	 */
+	public PairVerifier(int threads, char[] defaultPassword, ChainValidator validator) {
+		this(FielConverter.getDefault(), threads, defaultPassword, validator);
+	}
+
+	/**
+	 * @param converter motor con el que se descifran las llaves
+	 * @param threads número de hilos de trabajo, si es menor a 1 se usa el número de núcleos
+	 * @param defaultPassword contraseña de la llave que se usa cuando el par no indica una fuente
+	 * @param validator valida la cadena del certificado además de la vigencia, si es nulo solo se revisa la vigencia
+	 */
+	public PairVerifier(FielConverter converter, int threads, char[] defaultPassword, ChainValidator validator) {
+		this.converter = converter;
+		this.threads = (threads < 1) ? Runtime.getRuntime().availableProcessors() : threads;
+		this.defaultPassword = defaultPassword;
+		this.validator = validator;
+	}
+
+	/**
+	 * Resultado de la revisión de un par
+	 */
+	public static final class Result {
+		private final FielPair pair;
+		private final String rfc;
+		private final Date notAfter;
+		private final FailureReason failureReason;
+		private final String message;
+		private final long millis;
+
+		Result(FielPair pair, String rfc, Date notAfter, FailureReason failureReason, String message, long millis) {
+			this.pair = pair;
+			this.rfc = rfc;
+			this.notAfter = notAfter;
+			this.failureReason = failureReason;
+			this.message = message;
+			this.millis = millis;
+		}
+
+		public FielPair getPair() {
+			return pair;
+		}
+
+		public boolean isValid() {
+			return failureReason == null;
+		}
+
+		/**
+		 * @return String RFC del certificado o null si no se pudo leer
+		 */
+		public String getRfc() {
+			return rfc;
+		}
+
+		/**
+		 * @return Date fin de la vigencia del certificado o null si no se pudo leer
+		 */
+		public Date getNotAfter() {
+			return notAfter;
+		}
+
+		/**
+		 * @return FailureReason de la falla o null si el par es válido
+		 */
+		public FailureReason getFailureReason() {
+			return failureReason;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		@Override
+		public String toString() {
+			String certificate = (rfc == null) ? "" : rfc + " vence " + notAfter + " ";
+			return certificate + (isValid() ? "OK" : failureReason + ": " + message);
+		}
+	}
+
+	/**
+	 * Revisa todos los pares y escribe el reporte
+	 * @param pairs pares a revisar
+	 * @param report ruta del reporte CSV, si es nula no se escribe
+	 * @return List con el resultado de cada par en el mismo orden de entrada
+	 * @throws IOException si no se puede escribir el reporte
+	 * @throws InterruptedException si se interrumpe la espera de la revisión
+	 */
+	public List<Result> run(List<FielPair> pairs, Path report) throws IOException, InterruptedException {
+		List<Result> results = ParallelRunner.run(pairs, threads, "fiel-verify", this::verify,
+				(pair, error) -> new Result(pair, null, null, FailureReason.OTHER, String.valueOf(error), 0));
+		if (report != null) {
+			writeReport(results, report);
+		}
+		return results;
+	}
+
+	/**
+	 * Revisa un par atrapando cualquier error para que no afecte al resto
+	 * @param pair par a revisar
+	 * @return Result con el RFC, la vigencia y la causa de la falla si la hay
+	 */
+	public Result verify(FielPair pair) {
+		long start = System.nanoTime();
+		char[] password = null;
+		X509Certificate cert = null;
+		String rfc = null;
+		try {
+			if (pair.getError() != null) {
+				return failure(pair, null, null, FailureReason.OTHER, start, pair.getError());
+			}
+			// Un par incompleto no es un error de lectura ni de contraseña, queda como OTHER igual que un renglón inválido
+			if (pair.getKey() == null) {
+				return failure(pair, null, null, FailureReason.OTHER, start, "No se encontró la llave .key del certificado");
+			}
+			if (pair.getCer() == null) {
+				return failure(pair, null, null, FailureReason.OTHER, start, "No se encontró el certificado .cer de la llave");
+			}
+			password = pair.readPassword(defaultPassword);
+			if (password == null) {
+				return failure(pair, null, null, FailureReason.OTHER, start, "No se indicó la contraseña de la llave");
+			}
+			cert = converter.loadCertificate(pair.getCer());
+			rfc = rfc(cert);
+			PrivateKey privateKey = converter.loadPrivateKey(pair.getKey(), password);
+			FielConverter.checkKeyMatches(privateKey, cert.getPublicKey());
+			Date now = new Date();
+			if (validator != null) {
+				validator.validate(cert, now);
+			} else {
+				checkValidity(cert, now);
+			}
+			return new Result(pair, rfc, cert.getNotAfter(), null, "", elapsed(start));
+		} catch (Exception e) {
+			Date notAfter = (cert == null) ? null : cert.getNotAfter();
+			return new Result(pair, rfc, notAfter, ConversionMetrics.failure(e), e.getMessage(), elapsed(start));
+		} finally {
+			if (password != null) {
+				Arrays.fill(password, '\0');
+			}
+		}
+	}
+
+	/**
+	 * Revisa solo la vigencia con la misma excepción que {@link ChainValidator}
+	 */
+	private static void checkValidity(X509Certificate cert, Date date) throws CertPathValidatorException {
+		if (date.after(cert.getNotAfter())) {
+			throw new CertPathValidatorException("El certificado venció el " + cert.getNotAfter(), null, null, -1,
+					BasicReason.EXPIRED);
+		}
+		if (date.before(cert.getNotBefore())) {
+			throw new CertPathValidatorException("El certificado es vigente a partir del " + cert.getNotBefore(), null, null, -1,
+					BasicReason.NOT_YET_VALID);
+		}
+	}
+
+	private String rfc(X509Certificate cert) {
+		try {
+			return converter.getRFC(cert);
+		} catch (RuntimeException e) {
+			// El certificado no tiene el atributo 2.5.4.45, no es de una FIEL del SAT
+			return "";
+		}
+	}
+
+	private static Result failure(FielPair pair, String rfc, Date notAfter, FailureReason reason, long start, String message) {
+		ConversionMetrics.failure(reason);
+		return new Result(pair, rfc, notAfter, reason, message, elapsed(start));
+	}
+
+	private static long elapsed(long start) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	/**
+	 * Escribe el reporte CSV con una línea por par
+	 */
+	static void writeReport(List<Result> results, Path report) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+			writer.write("key,cer,status,rfc,notAfter,millis,message");
+			writer.newLine();
+			for (Result result : results) {
+				FielPair pair = result.getPair();
+				writer.write(String.join(",",
+						BatchConverter.csv(pair.getKey() == null ? "" : pair.getKey().getPath()),
+						BatchConverter.csv(pair.getCer() == null ? "" : pair.getCer().getPath()),
+						result.isValid() ? "OK" : result.getFailureReason().name(),
+						(result.getRfc() == null) ? "" : result.getRfc(),
+						(result.getNotAfter() == null) ? "" : result.getNotAfter().toInstant().toString(),
+						Long.toString(result.getMillis()),
+						BatchConverter.csv(result.getMessage() == null ? "" : result.getMessage())));
+				writer.newLine();
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Ejecuta una tarea por elemento en un grupo fijo de hilos y regresa los resultados en el orden de entrada.
+ * Es el esqueleto común del lote, la verificación y la migración: si una tarea lanza una excepción su
+ * resultado lo arma quien llama, y si se interrumpe la espera se cancelan las tareas pendientes y se
+ * espera a las que están en curso antes de regresar, así ninguna sigue escribiendo en un archivo que
+ * quien llama ya cerró.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+final class ParallelRunner {
+
+	/**
+	 * Tarea de un elemento
+	 */
+	interface Task<T, R> {
+		R run(T item) throws Exception;
+	}
+
+	private ParallelRunner() {
+	}
+
+	/**
+	 * @param items elementos a procesar
+	 * @param threads número de hilos, si es menor a 1 se usa el número de núcleos
+	 * @param name prefijo del nombre de los hilos
+	 * @param task tarea de cada elemento
+	 * @param onError arma el resultado del elemento cuya tarea lanzó la excepción indicada
+	 * @return List con el resultado de cada elemento en el mismo orden de entrada
+	 * @throws InterruptedException si se interrumpe la espera, las tareas en curso ya terminaron
+	 */
+	static <T, R> List<R> run(List<T> items, int threads, String name, Task<? super T, ? extends R> task,
+			BiFunction<? super T, Throwable, ? extends R> onError) throws InterruptedException {
+		ExecutorService pool = WorkerThreads.newFixedExecutor(threads, name);
+		List<R> results = new ArrayList<>(items.size());
+		try {
+			List<Future<? extends R>> futures = new ArrayList<>(items.size());
+			for (T item : items) {
+				futures.add(pool.submit(() -> task.run(item)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					results.add(onError.apply(items.get(i), e.getCause()));
+				}
+			}
+		} catch (InterruptedException e) {
+			pool.shutdownNow();
+			throw e;
+		} finally {
+			pool.shutdown();
+			awaitWorkers(pool);
+		}
+		return results;
+	}
+
+	/**
+	 * Espera a que terminen las tareas en curso aunque el hilo ya se haya interrumpido, la interrupción se restaura
+	 */
+	private static void awaitWorkers(ExecutorService pool) {
+		boolean interrupted = false;
+		while (!pool.isTerminated()) {
+			try {
+				pool.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
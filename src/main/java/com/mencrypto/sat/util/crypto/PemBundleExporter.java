@@ -0,0 +1,202 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Escribe muchos certificados y, si se pide, sus llaves en un solo archivo PEM.
+ * Todo se escribe por un mismo canal con un búfer US-ASCII, los búferes de lectura y de base64
+ * se reutilizan entre entradas y cada entrada se lee y analiza una sola vez, así la memoria
+ * no depende del número de entradas.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class PemBundleExporter implements Closeable {
+
+	private static final byte[] BEGIN = "-----BEGIN ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] END = "-----END ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] DASHES = "-----\n".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] CERTIFICATE = "CERTIFICATE".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] PRIVATE_KEY = "PRIVATE KEY".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NEW_LINE = { '\n' };
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer output = ByteBuffer.allocate(1 << 16);
+	private final Base64.Encoder encoder = Base64.getEncoder();
+	private final FielConverter converter = FielConverter.getDefault();
+	private final byte[] chunk = new byte[48];
+	private final byte[] line = new byte[64];
+	private byte[] input = new byte[8192];
+	private long certificates;
+	private long keys;
+
+	/**
+	 * @param channel canal destino, se cierra con {@link #close()}
+	 */
+	public PemBundleExporter(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * @param path archivo destino, se crea o se reemplaza
+	 * @return PemBundleExporter que escribe en el archivo
+	 * @throws IOException si no se puede abrir el archivo
+	 */
+	public static PemBundleExporter open(Path path) throws IOException {
+		return new PemBundleExporter(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	/**
+	 * Agrega un certificado DER, se valida antes de escribirlo
+	 * @param cer ruta del certificado
+	 * @return X509Certificate analizado, por si se requiere algún dato
+	 * @throws IOException si no se puede leer o escribir
+	 * @throws CertificateException si el certificado no es válido
+	 */
+	public X509Certificate addCertificate(Path cer) throws IOException, CertificateException {
+		int length = read(cer);
+		X509Certificate cert = converter.loadCertificate(new ByteArrayInputStream(input, 0, length));
+		write(CERTIFICATE, input, length);
+		certificates++;
+		return cert;
+	}
+
+	/**
+	 * Agrega la llave descifrada en PKCS#8 sin contraseña
+	 * @param key ruta de la llave PKCS#8 cifrada
+	 * @param password contraseña de la llave
+	 * @throws IOException si no se puede leer o escribir
+	 * @throws GeneralSecurityException si la contraseña no corresponde o la llave no es válida
+	 */
+	public void addKey(Path key, char[] password) throws IOException, GeneralSecurityException {
+		int length = read(key);
+		byte[] pkcs8 = null;
+		try {
+			PrivateKey privateKey = converter.loadPrivateKey(input, length, password);
+			pkcs8 = privateKey.getEncoded();
+			write(PRIVATE_KEY, pkcs8, pkcs8.length);
+		} finally {
+			Arrays.fill(input, 0, length, (byte) 0);
+			if (pkcs8 != null) {
+				Arrays.fill(pkcs8, (byte) 0);
+			}
+			Arrays.fill(chunk, (byte) 0);
+			Arrays.fill(line, (byte) 0);
+		}
+		keys++;
+	}
+
+	/**
+	 * Lee el archivo completo en el búfer de entrada reutilizable
+	 */
+	private int read(Path path) throws IOException {
+		try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = file.size();
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IOException("Archivo demasiado grande: " + path);
+			}
+			if (input.length < size) {
+				input = new byte[(int) size];
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(input, 0, (int) size);
+			while (buffer.hasRemaining() && file.read(buffer) >= 0) {
+				// Lee hasta llenar el tamaño del archivo
+			}
+			return buffer.position();
+		}
+	}
+
+	/**
+	 * Escribe un bloque PEM con el tipo indicado, el base64 se codifica en líneas de 64 caracteres
+	 * reutilizando los mismos búferes de 48 bytes de entrada y 64 de salida.
+	 * Es de paquete para que las pruebas comparen bloques de cualquier tamaño
+	 */
+	void write(byte[] type, byte[] der, int length) throws IOException {
+		put(BEGIN);
+		put(type);
+		put(DASHES);
+		for (int offset = 0; offset < length; offset += chunk.length) {
+			int count = Math.min(chunk.length, length - offset);
+			byte[] source = (count == chunk.length) ? chunk : new byte[count];
+			System.arraycopy(der, offset, source, 0, count);
+			put(line, encoder.encode(source, line));
+			put(NEW_LINE);
+			if (source != chunk) {
+				Arrays.fill(source, (byte) 0);
+			}
+		}
+		put(END);
+		put(type);
+		put(DASHES);
+	}
+
+	private void put(byte[] bytes) throws IOException {
+		put(bytes, bytes.length);
+	}
+
+	private void put(byte[] bytes, int length) throws IOException {
+		int offset = 0;
+		while (offset < length) {
+			if (!output.hasRemaining()) {
+				drain();
+			}
+			int count = Math.min(output.remaining(), length - offset);
+			output.put(bytes, offset, count);
+			offset += count;
+		}
+	}
+
+	private void drain() throws IOException {
+		output.flip();
+		while (output.hasRemaining()) {
+			channel.write(output);
+		}
+		output.clear();
+	}
+
+	/**
+	 * Escribe en el canal lo que quede en el búfer
+	 * @throws IOException si no se puede escribir
+	 */
+	public void flush() throws IOException {
+		drain();
+	}
+
+	public long getCertificateCount() {
+		return certificates;
+	}
+
+	public long getKeyCount() {
+		return keys;
+	}
+
+	/**
+	 * Escribe lo pendiente, limpia los búferes y cierra el canal
+	 * @throws IOException si no se puede escribir
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			drain();
+		} finally {
+			Arrays.fill(output.array(), (byte) 0);
+			Arrays.fill(input, (byte) 0);
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERBMPString;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.OutputEncryptor;
+import org.bouncycastle.pkcs.PKCS12PfxPduBuilder;
+import org.bouncycastle.pkcs.PKCS12SafeBag;
+import org.bouncycastle.pkcs.PKCS12SafeBagBuilder;
+import org.bouncycastle.pkcs.PKCSException;
+import org.bouncycastle.pkcs.jcajce.JcaPKCS12SafeBagBuilder;
+import org.bouncycastle.pkcs.jcajce.JcePKCS12MacCalculatorBuilder;
+import org.bouncycastle.pkcs.jcajce.JcePKCSPBEOutputEncryptorBuilder;
+
+/**
+ * Escribe archivos PKCS12 con un {@link ProtectionProfile} explícito armando el PFX directamente,
+ * de modo que el algoritmo y las iteraciones se eligen por llamada y no de forma global en el proceso
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+final class Pkcs12Writer {
+
+	/**
+	 * Entrada de llave privada con su cadena de certificados
+	 */
+	static final class Entry {
+		final String alias;
+		final PrivateKey key;
+		final Certificate[] chain;
+
+		Entry(String alias, PrivateKey key, Certificate[] chain) {
+			this.alias = alias;
+			this.key = key;
+			this.chain = chain;
+		}
+	}
+
+	private Pkcs12Writer() {
+	}
+
+	/**
+	 * Escribe un PKCS12 con una sola entrada
+	 * @param alias alias de la entrada
+	 * @param key llave privada
+	 * @param cert certificado de la llave
+	 * @param password contraseña del archivo y de la llave
+	 * @param profile perfil de protección
+	 * @param out flujo destino, no se cierra
+	 * @throws IOException si no se puede escribir
+	 * @throws GeneralSecurityException si no se puede cifrar
+	 */
+	static void write(String alias, PrivateKey key, X509Certificate cert, char[] password, ProtectionProfile profile,
+			OutputStream out) throws IOException, GeneralSecurityException {
+		List<Entry> entries = new ArrayList<>(1);
+		entries.add(new Entry(alias, key, new Certificate[] { cert }));
+		write(entries, password, profile, out);
+	}
+
+	/**
+	 * Escribe un PKCS12 con varias entradas de llave privada
+	 * @param entries entradas a escribir
+	 * @param password contraseña del archivo y de las llaves
+	 * @param profile perfil de protección
+	 * @param out flujo destino, no se cierra
+	 * @throws IOException si no se puede escribir
+	 * @throws GeneralSecurityException si no se puede cifrar
+	 */
+	static void write(List<Entry> entries, char[] password, ProtectionProfile profile, OutputStream out)
+			throws IOException, GeneralSecurityException {
+		if (profile.isProviderDefault()) {
+			KeyStore keyStore = KeyStore.getInstance("PKCS12", FielConverter.BC_PROVIDER);
+			keyStore.load(null, null);
+			for (Entry entry : entries) {
+				keyStore.setKeyEntry(entry.alias, entry.key, password, entry.chain);
+			}
+			keyStore.store(out, password);
+			return;
+		}
+		try {
+			JcaX509ExtensionUtils extUtils = new JcaX509ExtensionUtils();
+			OutputEncryptor keyEncryptor = encryptor(profile.getKeyAlgorithm(), profile, password);
+			OutputEncryptor certEncryptor = (profile.getCertAlgorithm() == null) ? null
+					: encryptor(profile.getCertAlgorithm(), profile, password);
+			PKCS12PfxPduBuilder pfxBuilder = new PKCS12PfxPduBuilder();
+			List<PKCS12SafeBag> certBags = new ArrayList<>();
+			List<PKCS12SafeBag> keyBags = new ArrayList<>();
+			for (Entry entry : entries) {
+				X509Certificate leaf = (X509Certificate) entry.chain[0];
+				SubjectKeyIdentifier keyId = extUtils.createSubjectKeyIdentifier(leaf.getPublicKey());
+				DERBMPString friendlyName = new DERBMPString(entry.alias);
+				for (int i = 0; i < entry.chain.length; i++) {
+					PKCS12SafeBagBuilder certBag = new JcaPKCS12SafeBagBuilder((X509Certificate) entry.chain[i]);
+					if (i == 0) {
+						certBag.addBagAttribute(PKCSObjectIdentifiers.pkcs_9_at_friendlyName, friendlyName);
+						certBag.addBagAttribute(PKCSObjectIdentifiers.pkcs_9_at_localKeyId, keyId);
+					}
+					certBags.add(certBag.build());
+				}
+				PKCS12SafeBagBuilder keyBag = new JcaPKCS12SafeBagBuilder(entry.key, keyEncryptor);
+				keyBag.addBagAttribute(PKCSObjectIdentifiers.pkcs_9_at_friendlyName, friendlyName);
+				keyBag.addBagAttribute(PKCSObjectIdentifiers.pkcs_9_at_localKeyId, keyId);
+				keyBags.add(keyBag.build());
+			}
+			PKCS12SafeBag[] certArray = certBags.toArray(new PKCS12SafeBag[0]);
+			if (certEncryptor != null) {
+				pfxBuilder.addEncryptedData(certEncryptor, certArray);
+			} else {
+				for (PKCS12SafeBag bag : certArray) {
+					pfxBuilder.addData(bag);
+				}
+			}
+			for (PKCS12SafeBag bag : keyBags) {
+				pfxBuilder.addData(bag);
+			}
+			JcePKCS12MacCalculatorBuilder macBuilder = new JcePKCS12MacCalculatorBuilder(profile.getMacDigest())
+					.setProvider(FielConverter.BC_PROVIDER)
+					.setIterationCount(profile.getMacIterations());
+			out.write(pfxBuilder.build(macBuilder, password).getEncoded(ASN1Encoding.DER));
+			out.flush();
+		} catch (OperatorCreationException | PKCSException e) {
+			throw new GeneralSecurityException("No se pudo proteger el PKCS12 con el perfil " + profile, e);
+		}
+	}
+
+	private static OutputEncryptor encryptor(ASN1ObjectIdentifier algorithm, ProtectionProfile profile,
+			char[] password) throws OperatorCreationException {
+		JcePKCSPBEOutputEncryptorBuilder builder = new JcePKCSPBEOutputEncryptorBuilder(algorithm)
+				.setProvider(FielConverter.BC_PROVIDER)
+				.setIterationCount(profile.getIterations());
+		if (profile.getPrf() != null) {
+			builder.setPRF(profile.getPrf());
+		}
+		return builder.build(password);
+	}
+}
@@ -0,0 +1,158 @@
+package com.mencrypto.sat.util.crypto;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+
+/**
+ * Perfil de protección de un PKCS12: algoritmo PBE de la llave y de los certificados,
+ * número de iteraciones del KDF y algoritmo e iteraciones de la MAC.
+ * El tiempo que tarda un servicio en abrir el .p12 depende casi por completo de estos valores,
+ * por eso se eligen de forma explícita:
+ * <ul>
+ * <li>{@code default}: los valores de BouncyCastle, es el comportamiento original</li>
+ * <li>{@code legacy}: 3DES para la llave, RC2-40 para los certificados y MAC SHA-1 con 2048 iteraciones,
+ * compatible con Windows, OpenSSL 1.x y Java 8</li>
+ * <li>{@code modern}: PBES2 AES-256-CBC con PBKDF2 HMAC-SHA256 y MAC SHA-256, las iteraciones son configurables</li>
+ * <li>{@code fast}: PBES2 AES-128-CBC con una sola iteración y certificados sin cifrar, solo para
+ * almacenes de vida corta dentro del mismo proceso</li>
+ * </ul>
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+public final class ProtectionProfile {
+
+	/** Iteraciones del perfil modern cuando no se indican, igual que el default del JDK */
+	public static final int DEFAULT_MODERN_ITERATIONS = 10_000;
+
+	private static final AlgorithmIdentifier HMAC_SHA256 = new AlgorithmIdentifier(PKCSObjectIdentifiers.id_hmacWithSHA256, DERNull.INSTANCE);
+
+	private static final ProtectionProfile BC_DEFAULT = new ProtectionProfile("default", null, null, null, 0, null, 0);
+
+	private final String name;
+	private final ASN1ObjectIdentifier keyAlgorithm;
+	private final ASN1ObjectIdentifier certAlgorithm;
+	private final AlgorithmIdentifier prf;
+	private final int iterations;
+	private final ASN1ObjectIdentifier macDigest;
+	private final int macIterations;
+
+	private ProtectionProfile(String name, ASN1ObjectIdentifier keyAlgorithm, ASN1ObjectIdentifier certAlgorithm,
+			AlgorithmIdentifier prf, int iterations, ASN1ObjectIdentifier macDigest, int macIterations) {
+		this.name = name;
+		this.keyAlgorithm = keyAlgorithm;
+		this.certAlgorithm = certAlgorithm;
+		this.prf = prf;
+		this.iterations = iterations;
+		this.macDigest = macDigest;
+		this.macIterations = macIterations;
+	}
+
+	/**
+	 * @return ProtectionProfile con los valores por default de BouncyCastle
+	 */
+	public static ProtectionProfile bcDefault() {
+		return BC_DEFAULT;
+	}
+
+	/**
+	 * @return ProtectionProfile compatible con herramientas antiguas
+	 */
+	public static ProtectionProfile legacy() {
+		return new ProtectionProfile("legacy", PKCSObjectIdentifiers.pbeWithSHAAnd3_KeyTripleDES_CBC,
+				PKCSObjectIdentifiers.pbeWithSHAAnd40BitRC2_CBC, null, 2048, OIWObjectIdentifiers.idSHA1, 2048);
+	}
+
+	/**
+	 * @param iterations iteraciones de PBKDF2 y de la MAC, si es menor a 1 se usa {@link #DEFAULT_MODERN_ITERATIONS}
+	 * @return ProtectionProfile con PBES2 AES-256
+	 */
+	public static ProtectionProfile modern(int iterations) {
+		int count = (iterations < 1) ? DEFAULT_MODERN_ITERATIONS : iterations;
+		return new ProtectionProfile("modern", NISTObjectIdentifiers.id_aes256_CBC, NISTObjectIdentifiers.id_aes256_CBC,
+				HMAC_SHA256, count, NISTObjectIdentifiers.id_sha256, count);
+	}
+
+	/**
+	 * @return ProtectionProfile de apertura rápida para almacenes temporales
+	 */
+	public static ProtectionProfile fast() {
+		return new ProtectionProfile("fast", NISTObjectIdentifiers.id_aes128_CBC, null, HMAC_SHA256, 1,
+				NISTObjectIdentifiers.id_sha256, 1);
+	}
+
+	/**
+	 * Obtiene el perfil por su nombre
+	 * @param name default, legacy, modern o fast, si es nulo o vacío se regresa default
+	 * @param iterations iteraciones para el perfil modern, se ignoran en los demás
+	 * @return ProtectionProfile correspondiente
+	 * @throws IllegalArgumentException si el nombre no existe
+	 */
+	public static ProtectionProfile parse(String name, int iterations) {
+		if (name == null || name.isBlank()) {
+			return BC_DEFAULT;
+		}
+		switch (name.trim().toLowerCase()) {
+		case "default":
+			return BC_DEFAULT;
+		case "legacy":
+			return legacy();
+		case "modern":
+			return modern(iterations);
+		case "fast":
+			return fast();
+		default:
+			throw new IllegalArgumentException("Perfil de protección desconocido: " + name);
+		}
+	}
+
+	/**
+	 * @return true si el KeyStore se escribe con los valores por default del proveedor
+	 */
+	public boolean isProviderDefault() {
+		return keyAlgorithm == null;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	ASN1ObjectIdentifier getKeyAlgorithm() {
+		return keyAlgorithm;
+	}
+
+	/**
+	 * @return ASN1ObjectIdentifier del cifrado de los certificados o null si se guardan sin cifrar
+	 */
+	ASN1ObjectIdentifier getCertAlgorithm() {
+		return certAlgorithm;
+	}
+
+	/**
+	 * @return AlgorithmIdentifier de la PRF de PBKDF2 o null si el algoritmo es un PBE de PKCS12
+	 */
+	AlgorithmIdentifier getPrf() {
+		return prf;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	ASN1ObjectIdentifier getMacDigest() {
+		return macDigest;
+	}
+
+	public int getMacIterations() {
+		return macIterations;
+	}
+
+	@Override
+	public String toString() {
+		return isProviderDefault() ? name : name + "(" + iterations + ")";
+	}
+}
@@ -0,0 +1,32 @@
+package com.mencrypto.sat.util.crypto;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR con la duración de una etapa de la conversión, se graba con
+ * {@code -XX:StartFlightRecording} o desde JDK Mission Control sin cambiar el código
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+@Name("com.mencrypto.fiel.Stage")
+@Label("Etapa de conversión FIEL")
+@Category({ "FIEL" })
+@Description("Lectura, descifrado, armado, guardado o escritura de una FIEL")
+@StackTrace(false)
+final class StageEvent extends Event {
+
+	@Label("Etapa")
+	String stage;
+
+	@Label("Correcta")
+	boolean success;
+
+	@Label("Causa del error")
+	String failure;
+}
@@ -0,0 +1,55 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fábricas de ejecutores para las tareas del proyecto.
+ * El proyecto compila para Java 17, por eso los hilos virtuales se obtienen por reflexión
+ * cuando el proceso corre en Java 21 o superior y de otra forma se usan hilos de plataforma.
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+final class WorkerThreads {
+
+	private WorkerThreads() {
+	}
+
+	/**
+	 * Crea un ejecutor con un hilo por tarea, virtual si la JVM lo permite
+	 * @param name prefijo del nombre de los hilos de plataforma
+	 * @return ExecutorService que no limita el número de tareas, el límite lo pone quien lo usa
+	 */
+	static ExecutorService newPerTaskExecutor(String name) {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Executors.newCachedThreadPool(daemonFactory(name));
+		}
+	}
+
+	/**
+	 * Crea un ejecutor con un número fijo de hilos de plataforma para trabajo de CPU
+	 * @param threads número de hilos, si es menor a 1 se usa el número de núcleos
+	 * @param name prefijo del nombre de los hilos
+	 * @return ExecutorService de tamaño fijo
+	 */
+	static ExecutorService newFixedExecutor(int threads, String name) {
+		int size = (threads < 1) ? Runtime.getRuntime().availableProcessors() : threads;
+		return Executors.newFixedThreadPool(size, daemonFactory(name));
+	}
+
+	private static ThreadFactory daemonFactory(String name) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -1,7 +1,12 @@
 module com.mencrypto.sat.util.crypto {
+	exports com.mencrypto.sat.util.crypto;
     requires java.base;
 	requires org.bouncycastle.provider;
 	requires org.bouncycastle.pkix;
 	requires org.bouncycastle.util;
 	requires org.apache.commons.cli;
+	requires jdk.httpserver;
+	requires java.net.http;
+	requires jdk.jfr;
+	provides java.security.Provider with com.mencrypto.sat.util.crypto.FielProvider;
 }
\ No newline at end of file
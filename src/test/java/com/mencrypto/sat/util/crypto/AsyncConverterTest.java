@@ -0,0 +1,163 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Pruebas de la cola acotada y de los resultados de la conversión asíncrona.
+ * Las conversiones se ejecutan a mano en el hilo de la prueba, así se controla cuándo se libera cada lugar
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class AsyncConverterTest {
+
+	private static final char[] STORE_PASSWORD = "nueva1".toCharArray();
+
+	private static TestFiel fiel;
+	private static byte[] cer;
+
+	private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+	private final Executor manual = tasks::add;
+
+	@BeforeAll
+	static void crearFiel() throws Exception {
+		fiel = TestFiel.current("AAAA010101AAA");
+		cer = fiel.getCertificate().getEncoded();
+	}
+
+	private CompletableFuture<ConversionResult> submit(AsyncConverter async) throws InterruptedException {
+		return async.submit(fiel.getKey(), cer, TestFiel.PASSWORD, STORE_PASSWORD, OutputFormat.P12, ProtectionProfile.bcDefault());
+	}
+
+	private CompletableFuture<ConversionResult> trySubmit(AsyncConverter async, long millis) throws InterruptedException {
+		return async.trySubmit(fiel.getKey(), cer, TestFiel.PASSWORD, STORE_PASSWORD, OutputFormat.P12,
+				ProtectionProfile.bcDefault(), millis, TimeUnit.MILLISECONDS);
+	}
+
+	private void runNext() {
+		tasks.remove().run();
+	}
+
+	@Test
+	void colaLlenaRechazaTrasEsperar() throws Exception {
+		try (AsyncConverter async = new AsyncConverter(FielConverter.getDefault(), manual, 1, 1)) {
+			submit(async);
+			submit(async);
+			assertEquals(2, async.getPending());
+
+			long start = System.nanoTime();
+			CompletableFuture<ConversionResult> rejected = trySubmit(async, 100);
+
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+			ExecutionException error = assertThrows(ExecutionException.class, rejected::get);
+			assertInstanceOf(RejectedExecutionException.class, error.getCause());
+			assertEquals(2, async.getPending());
+			assertEquals(2, tasks.size());
+		}
+	}
+
+	@Test
+	void colaLlenaBloqueaHastaQueTermineUna() throws Exception {
+		try (AsyncConverter async = new AsyncConverter(FielConverter.getDefault(), manual, 1, 1)) {
+			CompletableFuture<ConversionResult> first = submit(async);
+			submit(async);
+			AtomicReference<CompletableFuture<ConversionResult>> third = new AtomicReference<>();
+			Thread caller = new Thread(() -> {
+				try {
+					third.set(submit(async));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			caller.start();
+
+			caller.join(200);
+			assertTrue(caller.isAlive(), "submit debe esperar un lugar en la cola");
+			assertEquals(2, tasks.size());
+
+			runNext();
+			caller.join(5_000);
+			assertFalse(caller.isAlive());
+			assertTrue(first.get().isSuccess());
+			assertNotNull(third.get());
+			assertEquals(2, async.getPending());
+		}
+	}
+
+	@Test
+	void lugaresSeLiberanTrasExitoYFalla() throws Exception {
+		try (AsyncConverter async = new AsyncConverter(FielConverter.getDefault(), manual, 1, 0)) {
+			CompletableFuture<ConversionResult> failed = async.submit(fiel.getKey(), cer, "incorrecta".toCharArray(),
+					STORE_PASSWORD, OutputFormat.P12, ProtectionProfile.bcDefault());
+			// Con una sola conversión simultánea, si la falla no liberara su permiso la siguiente se quedaría esperando
+			assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+				runNext();
+				assertEquals(0, async.getPending());
+				CompletableFuture<ConversionResult> ok = submit(async);
+				runNext();
+				assertTrue(ok.get().isSuccess());
+			});
+			assertFalse(failed.get().isSuccess());
+			assertEquals(0, async.getPending());
+			assertFalse(trySubmit(async, 0).isDone());
+			assertEquals(1, async.getPending());
+		}
+	}
+
+	@Test
+	void contrasenaIncorrectaCompletaConSuCausa() throws Exception {
+		try (AsyncConverter async = new AsyncConverter(1, 0)) {
+			ConversionResult result = async.submit(fiel.getKey(), cer, "incorrecta".toCharArray(), STORE_PASSWORD,
+					OutputFormat.P12, ProtectionProfile.bcDefault()).get(30, TimeUnit.SECONDS);
+
+			assertFalse(result.isSuccess());
+			assertEquals(FailureReason.WRONG_PASSWORD, result.getFailureReason());
+			assertNotNull(result.getError());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(OutputFormat.class)
+	void certificadoInvalidoEsDerInvalidoEnTodosLosFormatos(OutputFormat format) throws Exception {
+		byte[] broken = new byte[cer.length / 2];
+		System.arraycopy(cer, 0, broken, 0, broken.length);
+		try (AsyncConverter async = new AsyncConverter(1, 0)) {
+			ConversionResult result = async.submit(fiel.getKey(), broken, TestFiel.PASSWORD, STORE_PASSWORD,
+					format, ProtectionProfile.bcDefault()).get(30, TimeUnit.SECONDS);
+
+			assertFalse(result.isSuccess());
+			assertEquals(FailureReason.BAD_DER, result.getFailureReason(), String.valueOf(result.getError()));
+		}
+	}
+
+	@Test
+	void cerradoRechaza() throws Exception {
+		AsyncConverter async = new AsyncConverter(FielConverter.getDefault(), manual, 1, 0);
+		async.close();
+
+		ExecutionException error = assertThrows(ExecutionException.class, () -> submit(async).get());
+		assertInstanceOf(RejectedExecutionException.class, error.getCause());
+		assertTrue(tasks.isEmpty());
+	}
+}
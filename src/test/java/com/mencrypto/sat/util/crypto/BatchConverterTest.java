@@ -0,0 +1,65 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la conversión por lote que no requieren una FIEL
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class BatchConverterTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void paresConElMismoCerSoloConvierteElPrimero() {
+		Map<Path, FielPair> outputs = new HashMap<>();
+		File cer = dir.resolve("a.cer").toFile();
+
+		assertNull(BatchConverter.claimOutputs(new FielPair(dir.resolve("a.key").toFile(), cer, null, OutputFormat.P12), outputs));
+		assertNull(BatchConverter.claimOutputs(new FielPair(dir.resolve("a.key").toFile(), cer, null, OutputFormat.JKS), outputs));
+		String conflict = BatchConverter.claimOutputs(new FielPair(dir.resolve("b.key").toFile(), cer, null, OutputFormat.P12), outputs);
+
+		assertNotNull(conflict);
+		assertTrue(conflict.contains("a.p12"));
+	}
+
+	@Test
+	void pemReservaLaLlaveYElCertificado() {
+		Map<Path, FielPair> outputs = new HashMap<>();
+		File key = dir.resolve("a.key").toFile();
+
+		assertNull(BatchConverter.claimOutputs(new FielPair(key, dir.resolve("a.cer").toFile(), null, OutputFormat.PEM), outputs));
+		assertNotNull(BatchConverter.claimOutputs(new FielPair(key, dir.resolve("b.cer").toFile(), null, OutputFormat.PEM), outputs));
+		// Una llave en PEM no choca con el p12 de su certificado
+		assertNull(BatchConverter.claimOutputs(new FielPair(key, dir.resolve("b.cer").toFile(), null, OutputFormat.P12), outputs));
+	}
+
+	@Test
+	void renglonesConErrorNoSeConvierten() throws Exception {
+		FielPair invalid = FielPair.invalid(dir.resolve("a.key").toFile(), dir.resolve("a.cer").toFile(), OutputFormat.P12,
+				"Formato de salida desconocido: zip");
+		FielPair missing = new FielPair(null, dir.resolve("b.cer").toFile(), null, OutputFormat.P12);
+
+		List<BatchConverter.PairResult> results = new BatchConverter(1, "x".toCharArray(), null, ProtectionProfile.bcDefault(), null).run(List.of(invalid, missing), null);
+
+		assertFalse(results.get(0).isSuccess());
+		assertTrue(results.get(0).getMessage().contains("zip"));
+		assertFalse(results.get(1).isSuccess());
+		assertFalse(dir.resolve("a.p12").toFile().exists());
+	}
+}
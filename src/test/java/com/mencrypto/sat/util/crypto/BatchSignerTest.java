@@ -0,0 +1,128 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del firmado por lotes
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class BatchSignerTest {
+
+	private static TestFiel fiel;
+
+	@TempDir
+	Path dir;
+
+	@BeforeAll
+	static void crearFiel() throws Exception {
+		fiel = TestFiel.current("AAAA010101AAA");
+	}
+
+	private static byte[] payload(int i) {
+		return ("||3.3|A|" + i + "|2024-01-01T00:00:00||").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static List<byte[]> payloads(int count) {
+		List<byte[]> payloads = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			payloads.add(payload(i));
+		}
+		return payloads;
+	}
+
+	@Test
+	void firmasEnOrdenYVerificablesConElCertificado() throws Exception {
+		Path cer = fiel.writeTo(dir, "fiel");
+		BatchSigner signer = BatchSigner.load(dir.resolve("fiel.key").toFile(), TestFiel.PASSWORD, 3);
+		int count = BatchSigner.CHUNK_SIZE * 5 + 7;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		long signed = signer.signAll(payloads(count).iterator(), out);
+
+		assertEquals(count, signed);
+		String[] lines = out.toString(StandardCharsets.US_ASCII).split("\n");
+		assertEquals(count, lines.length);
+		Signature verifier = Signature.getInstance(BatchSigner.ALGORITHM);
+		verifier.initVerify(FielConverter.getDefault().loadCertificate(Files.readAllBytes(cer)));
+		for (int i = 0; i < count; i++) {
+			verifier.update(payload(i));
+			assertTrue(verifier.verify(Base64.getDecoder().decode(lines[i])), "firma " + i);
+		}
+	}
+
+	@Test
+	void firmaIndividualIgualALaDelLote() throws Exception {
+		BatchSigner signer = new BatchSigner(fiel.getPrivateKey(), 1);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		signer.signAll(List.of(payload(0)).iterator(), out);
+
+		// PKCS#1 v1.5 es determinista, la misma llave y mensaje dan la misma firma
+		assertEquals(signer.sign(payload(0)) + "\n", out.toString(StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	void noLeeMasMensajesDeLosQueTienePendientes() throws Exception {
+		BatchSigner signer = new BatchSigner(fiel.getPrivateKey(), 1);
+		int count = 5000;
+		int[] written = new int[1];
+		int[] maxAhead = new int[1];
+		OutputStream out = new OutputStream() {
+			@Override
+			public void write(int b) {
+				if (b == '\n') {
+					written[0]++;
+				}
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				for (int i = off; i < off + len; i++) {
+					write(b[i]);
+				}
+			}
+		};
+		Iterator<byte[]> source = payloads(count).iterator();
+		int[] read = new int[1];
+		Iterator<byte[]> payloads = new Iterator<byte[]>() {
+			@Override
+			public boolean hasNext() {
+				return source.hasNext();
+			}
+
+			@Override
+			public byte[] next() {
+				read[0]++;
+				maxAhead[0] = Math.max(maxAhead[0], read[0] - written[0]);
+				return source.next();
+			}
+		};
+
+		signer.signAll(payloads, out);
+
+		assertEquals(count, written[0]);
+		// Con un hilo hay a lo más cuatro bloques pendientes, el que se está leyendo
+		// y las líneas que todavía no salen del búfer de 64 KiB
+		int lineLength = 4 * ((128 + 2) / 3) + 1;
+		int bound = 5 * BatchSigner.CHUNK_SIZE + (1 << 16) / lineLength + 1;
+		assertTrue(maxAhead[0] <= bound, "adelantados " + maxAhead[0] + " de " + bound);
+	}
+}
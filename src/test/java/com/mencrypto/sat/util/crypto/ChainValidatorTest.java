@@ -0,0 +1,138 @@
+package com.mencrypto.sat.util.crypto;
+
+import static com.mencrypto.sat.util.crypto.TestFiel.DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertPathValidatorException.BasicReason;
+import java.security.cert.PKIXReason;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.jcajce.JcaX509CRLConverter;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la validación sin conexión con CA y CRL locales
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class ChainValidatorTest {
+
+	private static final AtomicLong SERIAL = new AtomicLong(System.currentTimeMillis());
+
+	@TempDir
+	Path dir;
+
+	private long now;
+	private KeyPair caKeys;
+	private X509Certificate ca;
+
+	@BeforeEach
+	void crearCa() throws Exception {
+		now = System.currentTimeMillis();
+		caKeys = keyPair();
+		X500Name name = new X500Name("CN=AC DE PRUEBA");
+		ca = certificate(name, caKeys.getPublic(), name, caKeys.getPrivate(), now - DAY, now + 365 * DAY, true);
+		Files.createDirectories(dir.resolve("ca"));
+		Files.createDirectories(dir.resolve("crl"));
+		Files.write(dir.resolve("ca/ac.cer"), ca.getEncoded());
+	}
+
+	private static KeyPair keyPair() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(1024);
+		return generator.generateKeyPair();
+	}
+
+	private static X509Certificate certificate(X500Name subject, PublicKey publicKey, X500Name issuer,
+			PrivateKey signer, long notBefore, long notAfter, boolean authority) throws Exception {
+		JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(issuer, BigInteger.valueOf(SERIAL.incrementAndGet()),
+				new Date(notBefore), new Date(notAfter), subject, publicKey);
+		if (authority) {
+			builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+		}
+		return new JcaX509CertificateConverter().getCertificate(builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(signer)));
+	}
+
+	private X509Certificate leaf(long notBefore, long notAfter) throws Exception {
+		return certificate(new X500Name("CN=CONTRIBUYENTE"), keyPair().getPublic(), new X500Name("CN=AC DE PRUEBA"),
+				caKeys.getPrivate(), notBefore, notAfter, false);
+	}
+
+	private void writeCrl(String name, PrivateKey signer, long nextUpdate, X509Certificate... revoked) throws Exception {
+		JcaX509v2CRLBuilder builder = new JcaX509v2CRLBuilder(ca.getSubjectX500Principal(), new Date(now - DAY));
+		builder.setNextUpdate(new Date(nextUpdate));
+		for (X509Certificate cert : revoked) {
+			builder.addCRLEntry(cert.getSerialNumber(), new Date(now - DAY), CRLReason.keyCompromise);
+		}
+		Files.write(dir.resolve("crl").resolve(name), new JcaX509CRLConverter()
+				.getCRL(builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(signer))).getEncoded());
+	}
+
+	private ChainValidator load() throws Exception {
+		return ChainValidator.load(dir.resolve("ca"), dir.resolve("crl"));
+	}
+
+	@Test
+	void laRutaEnCacheNoSeUsaAntesDeLaVigenciaDeLaCa() throws Exception {
+		X509Certificate cert = leaf(now - 10 * DAY, now + 30 * DAY);
+		ChainValidator validator = load();
+
+		validator.validate(cert, new Date(now));
+		CertPathValidatorException e = assertThrows(CertPathValidatorException.class,
+				() -> validator.validate(cert, new Date(now - 5 * DAY)));
+
+		assertEquals(PKIXReason.NO_TRUST_ANCHOR, e.getReason());
+		validator.validate(cert, new Date(now));
+	}
+
+	@Test
+	void crlVencidaNoPermiteSaberSiEstaRevocado() throws Exception {
+		X509Certificate cert = leaf(now - DAY, now + 30 * DAY);
+		X509Certificate revoked = leaf(now - DAY, now + 30 * DAY);
+		writeCrl("vieja.crl", caKeys.getPrivate(), now - DAY / 2, revoked);
+		ChainValidator validator = load();
+
+		CertPathValidatorException e = assertThrows(CertPathValidatorException.class, () -> validator.validate(cert, new Date(now)));
+		assertEquals(BasicReason.UNDETERMINED_REVOCATION_STATUS, e.getReason());
+		e = assertThrows(CertPathValidatorException.class, () -> validator.validate(revoked, new Date(now)));
+		assertEquals(BasicReason.REVOKED, e.getReason());
+		validator.validate(cert, new Date(now - DAY));
+
+		writeCrl("nueva.crl", caKeys.getPrivate(), now + 7 * DAY);
+		load().validate(cert, new Date(now));
+	}
+
+	@Test
+	void crlDeOtraCaSeIgnora() throws Exception {
+		writeCrl("ajena.crl", keyPair().getPrivate(), now + 7 * DAY);
+
+		ChainValidator validator = load();
+
+		assertEquals(0, validator.getCrlCount());
+		assertEquals(Collections.singletonList(dir.resolve("crl/ajena.crl")), validator.getIgnoredCrls());
+		validator.validate(leaf(now - DAY, now + 30 * DAY), new Date(now));
+	}
+}
@@ -0,0 +1,50 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas del histograma de duraciones de las métricas
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class ConversionMetricsTest {
+
+	@Test
+	void cadaValorCabeEnSuCubeta() {
+		for (long value : new long[] { 0, 1, 63, 64, 127, 128, 1_000, 123_456_789, Long.MAX_VALUE }) {
+			int index = ConversionMetrics.Histogram.index(value);
+			assertTrue(ConversionMetrics.Histogram.highest(index) >= value);
+			assertTrue(index == 0 || ConversionMetrics.Histogram.highest(index - 1) < value);
+		}
+	}
+
+	@Test
+	void percentilesConErrorAcotado() {
+		ConversionMetrics.Histogram histogram = new ConversionMetrics.Histogram();
+		for (long millis = 1; millis <= 1_000; millis++) {
+			histogram.add(millis * 1_000_000);
+		}
+
+		assertEquals(1_000, histogram.count());
+		assertEquals(500_500L * 1_000_000, histogram.sum());
+		assertEquals(1_000_000_000L, histogram.max());
+		assertEquals(1_000_000_000L, histogram.percentile(100));
+		for (int percentile : new int[] { 50, 90, 99 }) {
+			double expected = percentile * 10 * 1_000_000.0;
+			double error = Math.abs(histogram.percentile(percentile) - expected) / expected;
+			assertTrue(error < 1.0 / 64, percentile + ": " + histogram.percentile(percentile));
+		}
+	}
+
+	@Test
+	void histogramaVacio() {
+		ConversionMetrics.Histogram histogram = new ConversionMetrics.Histogram();
+		assertEquals(0, histogram.percentile(99));
+		histogram.add(-5);
+		assertEquals(0, histogram.max());
+	}
+}
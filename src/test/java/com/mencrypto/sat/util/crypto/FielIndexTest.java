@@ -0,0 +1,118 @@
+package com.mencrypto.sat.util.crypto;
+
+import static com.mencrypto.sat.util.crypto.TestFiel.DAY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del índice de la bóveda
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class FielIndexTest {
+
+	@TempDir
+	Path vault;
+
+	@Test
+	void indiceGuardadoSoloVuelveALeerLoQueCambio() throws Exception {
+		TestFiel.current("AAA010101AAA").writeTo(vault.resolve("AAA010101AAA"), "AAA010101AAA");
+		TestFiel.current("BBB010101BBB").writeTo(vault.resolve("BBB010101BBB"), "BBB010101BBB");
+
+		FielIndex first = FielIndex.open(vault);
+		assertEquals(2, first.getParsedCount());
+		assertEquals(0, first.getLoadedCount());
+
+		FielIndex second = FielIndex.open(vault);
+		assertEquals(2, second.getLoadedCount());
+		assertEquals(0, second.getParsedCount());
+		assertEquals(2, second.findByRfc("aaa010101aaa").size() + second.findByRfc("BBB010101BBB").size());
+
+		Path changed = TestFiel.current("CCC010101CCC").writeTo(vault.resolve("BBB010101BBB"), "BBB010101BBB");
+		Files.setLastModifiedTime(changed, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+		FielIndex third = FielIndex.open(vault);
+		assertEquals(1, third.getParsedCount());
+		assertTrue(third.findByRfc("BBB010101BBB").isEmpty());
+		assertEquals(vault.resolve("BBB010101BBB/BBB010101BBB.key"), third.findByRfc("CCC010101CCC").get(0).getKey());
+	}
+
+	@Test
+	void indiceDanadoSeReconstruye() throws Exception {
+		TestFiel.current("AAA010101AAA").writeTo(vault, "AAA010101AAA");
+		Files.write(vault.resolve(FielIndex.DEFAULT_INDEX_NAME), new byte[] { 1, 2, 3 });
+
+		FielIndex index = FielIndex.open(vault);
+
+		assertEquals(-1, index.getLoadedCount());
+		assertEquals(1, index.all().size());
+	}
+
+	@Test
+	void llavesSeAsocianPorNombreCuandoHayVarias() throws Exception {
+		TestFiel.current("AAA010101AAA").writeTo(vault, "a");
+		TestFiel.current("BBB010101BBB").writeTo(vault, "b");
+		Files.delete(vault.resolve("b.key"));
+		Files.write(vault.resolve("otra.key"), new byte[] { 0 });
+
+		FielIndex index = new FielIndex(vault, null, 1);
+		index.scan();
+
+		assertEquals(vault.resolve("a.key"), index.findByRfc("AAA010101AAA").get(0).getKey());
+		assertNull(index.findByRfc("BBB010101BBB").get(0).getKey());
+	}
+
+	@Test
+	void sinCertificadoVigenteSeEligeElQueTieneLlave() throws Exception {
+		long now = System.currentTimeMillis();
+		TestFiel.generate("AAA010101AAA", now - 400 * DAY, now - 30 * DAY).writeTo(vault, "vencido");
+
+		FielIndex index = new FielIndex(vault, null, 1);
+		index.scan();
+		Optional<FielIndex.Entry> best = index.bestPair(now);
+
+		assertTrue(best.isPresent());
+		assertFalse(best.get().isCurrent(now));
+		assertEquals(vault.resolve("vencido.key"), best.get().getKey());
+	}
+
+	@Test
+	void elVigenteTienePrioridadSobreElVencido() throws Exception {
+		long now = System.currentTimeMillis();
+		TestFiel.generate("AAA010101AAA", now - 400 * DAY, now - 30 * DAY).writeTo(vault.resolve("vencido"), "fiel");
+		TestFiel.generate("AAA010101AAA", now - DAY, now + 30 * DAY).writeTo(vault.resolve("vigente"), "fiel");
+		TestFiel.generate("AAA010101AAA", now - DAY, now + 60 * DAY).writeTo(vault.resolve("sinllave"), "fiel");
+		Files.delete(vault.resolve("sinllave/fiel.key"));
+
+		FielIndex index = new FielIndex(vault, null, Integer.MAX_VALUE);
+		index.scan();
+
+		assertEquals(vault.resolve("vigente/fiel.cer"), index.bestPair(now).get().getCer());
+	}
+
+	@Test
+	void porVencerNoIncluyeLosVencidos() throws Exception {
+		long now = System.currentTimeMillis();
+		TestFiel.generate("AAA010101AAA", now - 400 * DAY, now - 30 * DAY).writeTo(vault, "vencido");
+		TestFiel.generate("BBB010101BBB", now - DAY, now + 10 * DAY).writeTo(vault, "pronto");
+		TestFiel.generate("CCC010101CCC", now - DAY, now + 300 * DAY).writeTo(vault, "lejos");
+
+		FielIndex index = new FielIndex(vault, null, 1);
+		index.scan();
+		List<FielIndex.Entry> expiring = index.expiringBefore(now, now + 30 * DAY);
+
+		assertEquals(1, expiring.size());
+		assertEquals("BBB010101BBB", expiring.get(0).getRfc());
+	}
+}
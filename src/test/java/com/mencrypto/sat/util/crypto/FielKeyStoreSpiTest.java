@@ -0,0 +1,75 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas del KeyStore FIEL sobre una bóveda
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class FielKeyStoreSpiTest {
+
+	@TempDir
+	Path vault;
+
+	private KeyStore load() throws Exception {
+		KeyStore keyStore = KeyStore.getInstance("FIEL", new FielProvider());
+		keyStore.load(new FielKeyStoreSpi.VaultParameter(vault, TestFiel.PASSWORD));
+		return keyStore;
+	}
+
+	@Test
+	void sinIndiceRecorreLaBovedaSinEscribir() throws Exception {
+		TestFiel fiel = TestFiel.current("AAA010101AAA");
+		fiel.writeTo(vault.resolve("a"), "fiel");
+
+		KeyStore keyStore = load();
+
+		assertFalse(Files.exists(vault.resolve(FielIndex.DEFAULT_INDEX_NAME)));
+		assertEquals(Collections.singletonList("AAA010101AAA"), Collections.list(keyStore.aliases()));
+		assertTrue(keyStore.isKeyEntry("aaa010101aaa"));
+		PrivateKey key = (PrivateKey) keyStore.getKey("AAA010101AAA", null);
+		assertArrayEquals(fiel.getPrivateKey().getEncoded(), key.getEncoded());
+	}
+
+	@Test
+	void conIndiceUsaSoloLoGuardado() throws Exception {
+		TestFiel.current("AAA010101AAA").writeTo(vault.resolve("a"), "fiel");
+		TestFiel.current("BBB010101BBB").writeTo(vault.resolve("b"), "fiel");
+		FielIndex.open(vault);
+		Path indexFile = vault.resolve(FielIndex.DEFAULT_INDEX_NAME);
+		byte[] saved = Files.readAllBytes(indexFile);
+
+		TestFiel.current("CCC010101CCC").writeTo(vault.resolve("c"), "fiel");
+		TestFiel.current("DDD010101DDD").writeTo(vault.resolve("b"), "fiel");
+		KeyStore keyStore = load();
+
+		assertArrayEquals(saved, Files.readAllBytes(indexFile));
+		assertEquals(2, keyStore.size());
+		assertFalse(keyStore.containsAlias("CCC010101CCC"));
+		// La llave asociada se guarda en el índice
+		assertTrue(keyStore.isKeyEntry("AAA010101AAA"));
+		assertNotNull(keyStore.getKey("AAA010101AAA", null));
+		// El certificado de b se reemplazó después de guardar el índice
+		assertNull(keyStore.getCertificate("BBB010101BBB"));
+		assertNull(keyStore.getKey("BBB010101BBB", null));
+
+		FielIndex.open(vault);
+		assertTrue(load().containsAlias("CCC010101CCC"));
+	}
+}
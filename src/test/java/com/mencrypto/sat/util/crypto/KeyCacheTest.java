@@ -0,0 +1,117 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas del caché de llaves descifradas
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class KeyCacheTest {
+
+	private static TestFiel fiel;
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@BeforeAll
+	static void crearFiel() throws Exception {
+		fiel = TestFiel.current("AAAA010101AAA");
+	}
+
+	@BeforeEach
+	void reiniciar() {
+		loads.set(0);
+	}
+
+	private KeyCache.Entry get(KeyCache cache, String key, String password) throws Exception {
+		return cache.get(key.getBytes(StandardCharsets.UTF_8), null, password.toCharArray(), () -> {
+			loads.incrementAndGet();
+			return KeyCache.loaded(fiel.getPrivateKey(), fiel.getCertificate());
+		});
+	}
+
+	@Test
+	void mismaLlaveYContrasenaSeReutiliza() throws Exception {
+		KeyCache cache = new KeyCache(10, Duration.ofMinutes(1));
+
+		KeyCache.Entry first = get(cache, "a", "12345678a");
+		KeyCache.Entry second = get(cache, "a", "12345678a");
+
+		assertSame(first, second);
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0, cache.getEvictions());
+	}
+
+	@Test
+	void otraContrasenaNoRegresaLaLlaveEnCache() throws Exception {
+		KeyCache cache = new KeyCache(10, Duration.ofMinutes(1));
+		KeyCache.Entry cached = get(cache, "a", "12345678a");
+
+		KeyCache.Entry other = get(cache, "a", "otra");
+
+		assertNotSame(cached, other);
+		assertEquals(2, loads.get());
+		assertEquals(0, cache.getHits());
+		// La entrada de la contraseña original se conserva
+		assertSame(cached, get(cache, "a", "12345678a"));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void llenoDesalojaLaDeAccesoMasAntiguo() throws Exception {
+		KeyCache cache = new KeyCache(2, Duration.ofMinutes(1));
+		get(cache, "a", "p");
+		get(cache, "b", "p");
+		get(cache, "a", "p");
+
+		get(cache, "c", "p");
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(3, loads.get());
+		get(cache, "a", "p");
+		assertEquals(3, loads.get());
+		get(cache, "b", "p");
+		assertEquals(4, loads.get());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	void entradaVencidaSeVuelveACargar() throws Exception {
+		KeyCache cache = new KeyCache(10, Duration.ofMillis(50));
+		get(cache, "a", "p");
+
+		Thread.sleep(100);
+		get(cache, "a", "p");
+
+		assertEquals(2, loads.get());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void limpiarCuentaLosDesalojos() throws Exception {
+		KeyCache cache = new KeyCache(10, Duration.ofMinutes(1));
+		get(cache, "a", "p");
+		get(cache, "b", "p");
+
+		cache.clear();
+
+		assertEquals(0, cache.size());
+		assertEquals(2, cache.getEvictions());
+	}
+}
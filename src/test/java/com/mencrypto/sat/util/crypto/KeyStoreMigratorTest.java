@@ -0,0 +1,111 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la migración de KeyStore con bitácora
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class KeyStoreMigratorTest {
+
+	private static final char[] OLD_PASSWORD = "vieja1".toCharArray();
+	private static final char[] NEW_PASSWORD = "nueva1".toCharArray();
+
+	@TempDir
+	Path dir;
+
+	private Path journal;
+
+	@BeforeEach
+	void crearKeyStores() throws Exception {
+		journal = dir.resolve("migracion.journal");
+		for (String rfc : new String[] { "AAA010101AAA", "BBB010101BBB", "CCC010101CCC" }) {
+			TestFiel fiel = TestFiel.current(rfc);
+			KeyStore keyStore = KeyStore.getInstance("JKS");
+			keyStore.load(null, null);
+			keyStore.setKeyEntry(rfc, fiel.getPrivateKey(), OLD_PASSWORD, new Certificate[] { fiel.getCertificate() });
+			try (OutputStream out = Files.newOutputStream(dir.resolve(rfc + ".jks"))) {
+				keyStore.store(out, OLD_PASSWORD);
+			}
+		}
+	}
+
+	private KeyStoreMigrator migrator() {
+		return new KeyStoreMigrator(OutputFormat.JKS, OutputFormat.P12, OLD_PASSWORD, NEW_PASSWORD, ProtectionProfile.bcDefault(), 2, false);
+	}
+
+	private static List<KeyStoreMigrator.Status> statuses(List<KeyStoreMigrator.FileResult> results) {
+		List<KeyStoreMigrator.Status> statuses = new ArrayList<>();
+		for (KeyStoreMigrator.FileResult result : results) {
+			statuses.add(result.getStatus());
+		}
+		return statuses;
+	}
+
+	@Test
+	void segundaEjecucionOmiteLoQueYaTermino() throws Exception {
+		KeyStoreMigrator migrator = migrator();
+		List<Path> files = migrator.find(dir);
+
+		assertEquals(List.of(KeyStoreMigrator.Status.MIGRATED, KeyStoreMigrator.Status.MIGRATED, KeyStoreMigrator.Status.MIGRATED),
+				statuses(migrator.run(files, journal)));
+		KeyStore migrated = KeyStore.getInstance(dir.resolve("BBB010101BBB.p12").toFile(), NEW_PASSWORD);
+		assertTrue(migrated.isKeyEntry("BBB010101BBB"));
+
+		assertEquals(List.of(KeyStoreMigrator.Status.SKIPPED, KeyStoreMigrator.Status.SKIPPED, KeyStoreMigrator.Status.SKIPPED),
+				statuses(migrator.run(files, journal)));
+		assertEquals(3, Files.readAllLines(journal, StandardCharsets.UTF_8).size());
+	}
+
+	@Test
+	void continuaDondeSeQuedo() throws Exception {
+		KeyStoreMigrator migrator = migrator();
+		List<Path> files = migrator.find(dir);
+		Files.write(journal, List.of("OK\t" + files.get(1).toAbsolutePath().normalize() + "\t",
+				"ERROR\t" + files.get(2).toAbsolutePath().normalize() + "\tIO: falla anterior"), StandardCharsets.UTF_8);
+
+		List<KeyStoreMigrator.FileResult> results = migrator.run(files, journal);
+
+		assertEquals(List.of(KeyStoreMigrator.Status.MIGRATED, KeyStoreMigrator.Status.SKIPPED, KeyStoreMigrator.Status.MIGRATED),
+				statuses(results));
+		assertFalse(Files.exists(dir.resolve("BBB010101BBB.p12")));
+		assertTrue(Files.exists(dir.resolve("CCC010101CCC.p12")));
+	}
+
+	@Test
+	void interrupcionDejaLaBitacoraCompleta() throws Exception {
+		KeyStoreMigrator migrator = migrator();
+		List<Path> files = migrator.find(dir);
+
+		Thread.currentThread().interrupt();
+		assertThrows(InterruptedException.class, () -> migrator.run(files, journal));
+		assertFalse(Thread.interrupted());
+
+		for (String line : Files.readAllLines(journal, StandardCharsets.UTF_8)) {
+			assertEquals(3, line.split("\t", -1).length, line);
+		}
+		for (KeyStoreMigrator.FileResult result : migrator.run(files, journal)) {
+			assertTrue(result.getStatus() != KeyStoreMigrator.Status.FAILED, result.getMessage());
+			assertTrue(KeyStore.getInstance(result.getTarget().toFile(), NEW_PASSWORD).isKeyEntry(
+					result.getSource().getFileName().toString().replace(".jks", "")));
+		}
+	}
+}
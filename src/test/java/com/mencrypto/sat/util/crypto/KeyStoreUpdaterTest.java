@@ -0,0 +1,142 @@
+package com.mencrypto.sat.util.crypto;
+
+import static com.mencrypto.sat.util.crypto.TestFiel.DAY;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.KeyStore;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la actualización de un KeyStore con muchas entradas
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class KeyStoreUpdaterTest {
+
+	private static final char[] STORE_PASSWORD = "almacen1".toCharArray();
+
+	@TempDir
+	Path dir;
+
+	private KeyStoreUpdater open(Path store) throws Exception {
+		KeyStoreUpdater updater = new KeyStoreUpdater(store, OutputFormat.P12, STORE_PASSWORD);
+		updater.open();
+		return updater;
+	}
+
+	private Path write(TestFiel fiel, String name) throws Exception {
+		return fiel.writeTo(dir.resolve(name), "fiel");
+	}
+
+	private static Path key(Path cer) {
+		return cer.resolveSibling("fiel.key");
+	}
+
+	@Test
+	void mismoCertificadoNoSeEscribe() throws Exception {
+		Path store = dir.resolve("almacen.p12");
+		Path cer = write(TestFiel.current("AAAA010101AAA"), "a");
+		KeyStoreUpdater updater = open(store);
+		assertEquals(KeyStoreUpdater.Change.ADDED, updater.put(key(cer), cer, TestFiel.PASSWORD));
+		assertTrue(updater.save());
+		byte[] saved = Files.readAllBytes(store);
+
+		updater = open(store);
+		assertEquals(KeyStoreUpdater.Change.UNCHANGED, updater.put(key(cer), cer, "incorrecta".toCharArray()));
+		assertFalse(updater.isModified());
+		assertFalse(updater.save());
+		assertArrayEquals(saved, Files.readAllBytes(store));
+	}
+
+	@Test
+	void certificadoRenovadoReemplazaLaEntrada() throws Exception {
+		Path store = dir.resolve("almacen.p12");
+		Path old = write(TestFiel.current("AAAA010101AAA"), "vieja");
+		TestFiel renewed = TestFiel.current("AAAA010101AAA");
+		Path cer = write(renewed, "nueva");
+		KeyStoreUpdater updater = open(store);
+		updater.put(key(old), old, TestFiel.PASSWORD);
+		updater.save();
+
+		updater = open(store);
+		assertEquals(KeyStoreUpdater.Change.REPLACED, updater.put(key(cer), cer, TestFiel.PASSWORD));
+		assertTrue(updater.save());
+
+		KeyStore keyStore = KeyStore.getInstance(store.toFile(), STORE_PASSWORD);
+		assertEquals(1, keyStore.size());
+		assertEquals(renewed.getCertificate(), keyStore.getCertificate("AAAA010101AAA"));
+	}
+
+	@Test
+	void llaveDeOtroCertificadoNoSeAgrega() throws Exception {
+		Path cer = write(TestFiel.current("AAAA010101AAA"), "a");
+		Path other = write(TestFiel.current("BBBB010101BBB"), "b");
+		KeyStoreUpdater updater = open(dir.resolve("almacen.p12"));
+
+		assertThrows(KeyMismatchException.class, () -> updater.put(key(other), cer, TestFiel.PASSWORD));
+		assertFalse(updater.isModified());
+		assertEquals(0, updater.size());
+	}
+
+	@Test
+	void depurarEliminaSoloLosVencidos() throws Exception {
+		long now = System.currentTimeMillis();
+		Path store = dir.resolve("almacen.p12");
+		Path expired = write(TestFiel.generate("AAAA010101AAA", now - 400 * DAY, now - DAY), "vencida");
+		Path current = write(TestFiel.current("BBBB010101BBB"), "vigente");
+		KeyStoreUpdater updater = open(store);
+		updater.put(key(expired), expired, TestFiel.PASSWORD);
+		updater.put(key(current), current, TestFiel.PASSWORD);
+		updater.save();
+
+		updater = open(store);
+		// El PKCS12 del JDK regresa los alias en minúsculas
+		assertEquals(List.of("aaaa010101aaa"), updater.pruneExpired(new Date(now)));
+		assertTrue(updater.save());
+
+		updater = open(store);
+		assertEquals(1, updater.size());
+		assertEquals(List.of(), updater.pruneExpired(new Date(now)));
+		assertFalse(updater.save());
+	}
+
+	@Test
+	void guardarConservaLosPermisos() throws Exception {
+		Assumptions.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		Path store = dir.resolve("almacen.p12");
+		Path first = write(TestFiel.current("AAAA010101AAA"), "a");
+		Path second = write(TestFiel.current("BBBB010101BBB"), "b");
+		KeyStoreUpdater updater = open(store);
+		updater.put(key(first), first, TestFiel.PASSWORD);
+		updater.save();
+		Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+		Files.setPosixFilePermissions(store, permissions);
+
+		updater = open(store);
+		updater.put(key(second), second, TestFiel.PASSWORD);
+		assertTrue(updater.save());
+
+		assertEquals(permissions, Files.getPosixFilePermissions(store));
+		assertEquals(2, open(store).size());
+		try (Stream<Path> files = Files.list(dir)) {
+			assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+		}
+	}
+}
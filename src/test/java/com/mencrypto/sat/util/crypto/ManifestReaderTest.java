@@ -0,0 +1,132 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la lectura de manifiestos y directorios del modo por lote
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class ManifestReaderTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void csvResuelveRutasContraElManifiesto() throws IOException {
+		Path manifest = write("lote.csv",
+				"key,cer,password,format\n"
+				+ "# comentario\n"
+				+ "a/a.key,a/a.cer,env:PWD_A,jks\n"
+				+ "\"b, c.key\",b.cer,,\n");
+
+		List<FielPair> pairs = ManifestReader.read(manifest, OutputFormat.P12);
+
+		assertEquals(2, pairs.size());
+		assertEquals(dir.resolve("a/a.key").toFile(), pairs.get(0).getKey());
+		assertEquals("env:PWD_A", pairs.get(0).getPasswordSource());
+		assertEquals(OutputFormat.JKS, pairs.get(0).getFormat());
+		assertEquals(dir.resolve("b, c.key").toFile(), pairs.get(1).getKey());
+		assertNull(pairs.get(1).getPasswordSource());
+		assertEquals(OutputFormat.P12, pairs.get(1).getFormat());
+	}
+
+	@Test
+	void formatoDesconocidoSoloMarcaSuRenglon() throws IOException {
+		Path manifest = write("lote.csv",
+				"a.key,a.cer,,zip\n"
+				+ "b.key,b.cer,,pfx\n");
+
+		List<FielPair> pairs = ManifestReader.read(manifest, OutputFormat.JKS);
+
+		assertEquals(2, pairs.size());
+		assertNotNull(pairs.get(0).getError());
+		assertTrue(pairs.get(0).getError().contains("zip"));
+		assertEquals(dir.resolve("a.cer").toFile(), pairs.get(0).getCer());
+		assertNull(pairs.get(1).getError());
+		assertEquals(OutputFormat.P12, pairs.get(1).getFormat());
+	}
+
+	@Test
+	void jsonConEscapes() throws IOException {
+		Path manifest = write("lote.json",
+				"[{\"key\": \"\\u0061.key\", \"cer\": \"a.cer\", \"password\": \"pwd:x\\\"y\", \"format\": \"PEM\", \"n\": 1},\n"
+				+ " {\"key\": \"b.key\", \"cer\": null}]");
+
+		List<FielPair> pairs = ManifestReader.read(manifest, OutputFormat.P12);
+
+		assertEquals(2, pairs.size());
+		assertEquals(dir.resolve("a.key").toFile(), pairs.get(0).getKey());
+		assertEquals("pwd:x\"y", pairs.get(0).getPasswordSource());
+		assertEquals(OutputFormat.PEM, pairs.get(0).getFormat());
+		assertNull(pairs.get(1).getCer());
+	}
+
+	@Test
+	void jsonConEscapeInvalidoSoloMarcaSuRenglon() throws IOException {
+		Path manifest = write("lote.json",
+				"[{\"key\": \"a.key\", \"cer\": \"a\\u00zz.cer\"},"
+				+ " {\"key\": \"b.key\", \"cer\": \"b\\u+123.cer\"},"
+				+ " {\"key\": \"c.key\", \"cer\": \"c.cer\", \"format\": \"zip\"},"
+				+ " {\"key\": \"d.key\", \"cer\": \"d.cer\"}]");
+
+		List<FielPair> pairs = ManifestReader.read(manifest, OutputFormat.P12);
+
+		assertEquals(4, pairs.size());
+		assertTrue(pairs.get(0).getError().contains("\\u00zz"));
+		assertTrue(pairs.get(1).getError().contains("\\u+123"));
+		assertTrue(pairs.get(2).getError().contains("zip"));
+		assertNull(pairs.get(3).getError());
+		assertEquals(dir.resolve("d.cer").toFile(), pairs.get(3).getCer());
+	}
+
+	@Test
+	void jsonMalFormadoEsError() throws IOException {
+		Path manifest = write("lote.json", "[{\"key\": \"a.key\"");
+
+		assertThrows(IOException.class, () -> ManifestReader.read(manifest, OutputFormat.P12));
+	}
+
+	@Test
+	void directorioEmparejaPorCarpetaYNombre() throws IOException {
+		Files.createDirectories(dir.resolve("uno"));
+		Files.createDirectories(dir.resolve("dos"));
+		write("uno/llave.key", "");
+		write("uno/certificado.cer", "");
+		write("dos/a.key", "");
+		write("dos/a.cer", "");
+		write("dos/b.key", "");
+		write("dos/c.cer", "");
+
+		List<FielPair> pairs = ManifestReader.read(dir, OutputFormat.JKS);
+
+		assertEquals(4, pairs.size());
+		assertEquals(dir.resolve("dos/a.cer").toFile(), pairs.get(0).getCer());
+		assertEquals(dir.resolve("dos/b.key").toFile(), pairs.get(1).getKey());
+		assertNull(pairs.get(1).getCer());
+		assertNull(pairs.get(2).getKey());
+		assertEquals(dir.resolve("dos/c.cer").toFile(), pairs.get(2).getCer());
+		assertEquals(dir.resolve("uno/certificado.cer").toFile(), pairs.get(3).getCer());
+		assertEquals(OutputFormat.JKS, pairs.get(3).getFormat());
+	}
+
+	private Path write(String name, String content) throws IOException {
+		Path file = dir.resolve(name);
+		Files.writeString(file, content, StandardCharsets.UTF_8);
+		return file;
+	}
+}
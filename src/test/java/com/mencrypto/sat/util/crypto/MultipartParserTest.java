@@ -0,0 +1,67 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas del lector de multipart/form-data del servidor
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class MultipartParserTest {
+
+	@Test
+	void boundaryConYSinComillas() {
+		assertEquals("abc", MultipartParser.boundary("multipart/form-data; boundary=abc"));
+		assertEquals("a b", MultipartParser.boundary("Multipart/Form-Data; charset=utf-8; boundary=\"a b\""));
+		assertNull(MultipartParser.boundary("application/json"));
+		assertNull(MultipartParser.boundary(null));
+	}
+
+	@Test
+	void nombreNoSeConfundeConFilename() {
+		assertEquals("key", MultipartParser.partName("Content-Disposition: form-data; filename=\"name=x.key\"; name=\"key\""));
+		assertEquals("cer", MultipartParser.partName("content-disposition: form-data; filename=\"a;name=b.cer\"; name=cer"));
+		assertEquals("key", MultipartParser.partName("Content-Type: application/octet-stream\r\n"
+				+ "Content-Disposition: form-data;name=\"key\";filename=\"fiel.key\""));
+		assertEquals("a\"b", MultipartParser.partName("Content-Disposition: form-data; name=\"a\\\"b\""));
+		assertNull(MultipartParser.partName("Content-Disposition: form-data; filename=\"fiel.key\""));
+		assertNull(MultipartParser.partName("Content-Type: text/plain"));
+	}
+
+	@Test
+	void separaLasPartes() throws IOException {
+		String body = "preámbulo\r\n"
+				+ "--xyz\r\n"
+				+ "Content-Disposition: form-data; filename=\"c.cer\"; name=\"cer\"\r\n"
+				+ "Content-Type: application/octet-stream\r\n\r\n"
+				+ "\u0001\u0002\r\n"
+				+ "--xyz\r\n"
+				+ "Content-Disposition: form-data; name=\"password\"\r\n\r\n"
+				+ "12345678a\r\n"
+				+ "--xyz--\r\n";
+
+		Map<String, byte[]> parts = MultipartParser.parse(body.getBytes(StandardCharsets.UTF_8), "xyz");
+
+		assertEquals(2, parts.size());
+		assertArrayEquals(new byte[] { 1, 2 }, parts.get("cer"));
+		assertEquals("12345678a", new String(parts.get("password"), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void cuerpoSinCerrarEsError() {
+		byte[] body = "--xyz\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\nvalor".getBytes(StandardCharsets.UTF_8);
+
+		assertThrows(IOException.class, () -> MultipartParser.parse(body, "xyz"));
+		assertThrows(IOException.class, () -> MultipartParser.parse(body, "otro"));
+	}
+}
@@ -0,0 +1,130 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de la revisión previa de pares
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class PairVerifierTest {
+
+	private static TestFiel vigente;
+	private static TestFiel otra;
+	private static TestFiel vencida;
+
+	@TempDir
+	Path dir;
+
+	@BeforeAll
+	static void crearFiel() throws Exception {
+		long now = System.currentTimeMillis();
+		vigente = TestFiel.current("AAAA010101AAA");
+		otra = TestFiel.current("BBBB010101BBB");
+		vencida = TestFiel.generate("CCCC010101CCC", now - 400 * TestFiel.DAY, now - 30 * TestFiel.DAY);
+	}
+
+	private FielPair pair(TestFiel fiel, String name, String passwordSource) throws Exception {
+		File cer = fiel.writeTo(dir, name).toFile();
+		return new FielPair(dir.resolve(name + ".key").toFile(), cer, passwordSource, OutputFormat.P12);
+	}
+
+	private static PairVerifier verifier() {
+		return new PairVerifier(2, TestFiel.PASSWORD, null);
+	}
+
+	@Test
+	void parValidoTraeRfcYVigencia() throws Exception {
+		PairVerifier.Result result = verifier().verify(pair(vigente, "a", null));
+
+		assertTrue(result.isValid(), result.toString());
+		assertEquals("AAAA010101AAA", result.getRfc());
+		assertEquals(vigente.getCertificate().getNotAfter(), result.getNotAfter());
+	}
+
+	@Test
+	void contrasenaIncorrecta() throws Exception {
+		PairVerifier.Result result = verifier().verify(pair(vigente, "a", "pwd:incorrecta"));
+
+		assertEquals(FailureReason.WRONG_PASSWORD, result.getFailureReason());
+	}
+
+	@Test
+	void llaveDeOtroCertificado() throws Exception {
+		pair(vigente, "a", null);
+		pair(otra, "b", null);
+		FielPair mixed = new FielPair(dir.resolve("b.key").toFile(), dir.resolve("a.cer").toFile(), null, OutputFormat.P12);
+
+		PairVerifier.Result result = verifier().verify(mixed);
+
+		assertEquals(FailureReason.KEY_MISMATCH, result.getFailureReason());
+		assertEquals("AAAA010101AAA", result.getRfc());
+	}
+
+	@Test
+	void certificadoVencidoConservaRfcYVigencia() throws Exception {
+		PairVerifier.Result result = verifier().verify(pair(vencida, "c", null));
+
+		assertEquals(FailureReason.INVALID_CERTIFICATE, result.getFailureReason());
+		assertEquals("CCCC010101CCC", result.getRfc());
+		assertEquals(vencida.getCertificate().getNotAfter(), result.getNotAfter());
+	}
+
+	@Test
+	void parIncompletoEsOther() throws Exception {
+		FielPair complete = pair(vigente, "a", null);
+		FielPair withoutKey = new FielPair(null, complete.getCer(), null, OutputFormat.P12);
+		FielPair withoutCer = new FielPair(complete.getKey(), null, null, OutputFormat.P12);
+
+		PairVerifier withoutPassword = new PairVerifier(1, null, null);
+
+		assertEquals(FailureReason.OTHER, verifier().verify(withoutKey).getFailureReason());
+		assertEquals(FailureReason.OTHER, verifier().verify(withoutCer).getFailureReason());
+		PairVerifier.Result result = withoutPassword.verify(complete);
+		assertEquals(FailureReason.OTHER, result.getFailureReason());
+		assertNull(result.getRfc());
+	}
+
+	@Test
+	void soloSeEscribeElReporte() throws Exception {
+		List<FielPair> pairs = List.of(pair(vigente, "a", null), pair(vigente, "b", "pwd:incorrecta"), pair(vencida, "c", null));
+		Set<Path> before = list();
+		Path report = dir.resolve("reporte.csv");
+
+		List<PairVerifier.Result> results = verifier().run(pairs, report);
+
+		Set<Path> after = list();
+		after.removeAll(before);
+		assertEquals(Set.of(report), after);
+		assertTrue(results.get(0).isValid());
+		assertFalse(results.get(1).isValid());
+		List<String> lines = Files.readAllLines(report, StandardCharsets.UTF_8);
+		assertEquals(4, lines.size());
+		assertTrue(lines.get(1).contains(",OK,AAAA010101AAA,"), lines.get(1));
+		assertTrue(lines.get(2).contains(",WRONG_PASSWORD,"), lines.get(2));
+		assertTrue(lines.get(3).contains(",INVALID_CERTIFICATE,CCCC010101CCC,"), lines.get(3));
+	}
+
+	private Set<Path> list() throws Exception {
+		try (Stream<Path> files = Files.walk(dir)) {
+			return files.collect(Collectors.toSet());
+		}
+	}
+}
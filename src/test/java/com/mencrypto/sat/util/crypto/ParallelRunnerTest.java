@@ -0,0 +1,68 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas del esqueleto paralelo del lote, la verificación y la migración
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class ParallelRunnerTest {
+
+	@Test
+	void conservaElOrdenYReportaLosErrores() throws Exception {
+		List<String> results = ParallelRunner.run(List.of(30, 0, 10, 20), 3, "prueba", millis -> {
+			if (millis == 0) {
+				throw new IOException("falla");
+			}
+			Thread.sleep(millis);
+			return "ok" + millis;
+		}, (millis, error) -> error.getMessage());
+
+		assertEquals(List.of("ok30", "falla", "ok10", "ok20"), results);
+	}
+
+	@Test
+	void interrupcionEsperaALasTareasEnCurso() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger finished = new AtomicInteger();
+		Thread caller = Thread.currentThread();
+		Thread interrupter = new Thread(() -> {
+			try {
+				started.await();
+			} catch (InterruptedException e) {
+				return;
+			}
+			caller.interrupt();
+		});
+		interrupter.start();
+
+		assertThrows(InterruptedException.class, () -> ParallelRunner.run(List.of(1, 2, 3, 4), 1, "prueba", item -> {
+			running.incrementAndGet();
+			started.countDown();
+			long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+			while (System.nanoTime() < end) {
+				// Ocupado sin atender la interrupción, como una escritura en curso
+			}
+			finished.incrementAndGet();
+			return item;
+		}, (item, error) -> -1));
+		interrupter.join();
+
+		assertFalse(Thread.interrupted());
+		assertEquals(running.get(), finished.get());
+		assertEquals(1, running.get());
+	}
+}
@@ -0,0 +1,101 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemReader;
+import org.bouncycastle.util.io.pem.PemWriter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * El PEM del exportador debe ser idéntico al de BouncyCastle
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class PemBundleExporterTest {
+
+	private static TestFiel fiel;
+
+	@TempDir
+	Path dir;
+
+	@BeforeAll
+	static void crearFiel() throws Exception {
+		fiel = TestFiel.current("AAAA010101AAA");
+	}
+
+	private static String normalize(String pem) {
+		return pem.replace("\r\n", "\n");
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = { 1, 47, 48, 49, 96, 100, 48 * 21, 48 * 21 + 5 })
+	void bloqueIgualAlDeBouncyCastle(int length) throws Exception {
+		byte[] der = new byte[length];
+		new Random(length).nextBytes(der);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (PemBundleExporter exporter = new PemBundleExporter(Channels.newChannel(out))) {
+			exporter.write("CERTIFICATE".getBytes(StandardCharsets.US_ASCII), der, length);
+		}
+		StringWriter expected = new StringWriter();
+		try (PemWriter writer = new PemWriter(expected)) {
+			writer.writeObject(new PemObject("CERTIFICATE", der));
+		}
+
+		String pem = out.toString(StandardCharsets.US_ASCII);
+		assertEquals(normalize(expected.toString()), pem);
+		try (PemReader reader = new PemReader(new StringReader(pem))) {
+			PemObject object = reader.readPemObject();
+			assertEquals("CERTIFICATE", object.getType());
+			assertArrayEquals(der, object.getContent());
+			assertNull(reader.readPemObject());
+		}
+	}
+
+	@Test
+	void certificadoYLlaveSeLeenConPemParser() throws Exception {
+		Path cer = fiel.writeTo(dir, "fiel");
+		Path pem = dir.resolve("bundle.pem");
+		try (PemBundleExporter exporter = PemBundleExporter.open(pem)) {
+			exporter.addCertificate(cer);
+			exporter.addKey(dir.resolve("fiel.key"), TestFiel.PASSWORD);
+			assertEquals(1, exporter.getCertificateCount());
+			assertEquals(1, exporter.getKeyCount());
+		}
+		StringWriter expected = new StringWriter();
+		try (JcaPEMWriter writer = new JcaPEMWriter(expected)) {
+			writer.writeObject(fiel.getCertificate());
+			writer.writeObject(new PemObject("PRIVATE KEY", fiel.getPrivateKey().getEncoded()));
+		}
+
+		String written = Files.readString(pem, StandardCharsets.US_ASCII);
+		assertEquals(normalize(expected.toString()), written);
+		try (PEMParser parser = new PEMParser(new StringReader(written))) {
+			X509CertificateHolder cert = (X509CertificateHolder) parser.readObject();
+			assertArrayEquals(fiel.getCertificate().getEncoded(), cert.getEncoded());
+			PrivateKeyInfo key = (PrivateKeyInfo) parser.readObject();
+			assertArrayEquals(fiel.getPrivateKey().getEncoded(), key.getEncoded());
+			assertNull(parser.readObject());
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.mencrypto.sat.util.crypto;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Los p12 de cada perfil de protección se deben abrir con el proveedor PKCS12 del JDK
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+class ProtectionProfileTest {
+
+	private static final char[] STORE_PASSWORD = "nueva1".toCharArray();
+
+	private static TestFiel fiel;
+
+	@BeforeAll
+	static void crearFiel() throws Exception {
+		fiel = TestFiel.current("AAA010101AAA");
+	}
+
+	private static KeyStore openWithJdk(byte[] p12) throws Exception {
+		// El proveedor SUN es el de PKCS12 del JDK, aunque BouncyCastle esté registrado
+		KeyStore keyStore = KeyStore.getInstance("PKCS12", "SUN");
+		keyStore.load(new ByteArrayInputStream(p12), STORE_PASSWORD);
+		return keyStore;
+	}
+
+	private static void assertOpens(byte[] p12) throws Exception {
+		KeyStore keyStore = openWithJdk(p12);
+		List<String> aliases = Collections.list(keyStore.aliases());
+		assertEquals(1, aliases.size());
+		String alias = aliases.get(0);
+		assertTrue(keyStore.isKeyEntry(alias));
+		Key key = keyStore.getKey(alias, STORE_PASSWORD);
+		assertArrayEquals(fiel.getPrivateKey().getEncoded(), key.getEncoded());
+		assertEquals(fiel.getCertificate(), keyStore.getCertificate(alias));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "default", "legacy", "modern", "fast" })
+	void conversionAbreConElJdk(String profile) throws Exception {
+		byte[] p12 = FielConverter.getDefault().convert(fiel.getKey(), fiel.getCertificate().getEncoded(), TestFiel.PASSWORD,
+				STORE_PASSWORD, OutputFormat.P12, ProtectionProfile.parse(profile, 0));
+
+		assertOpens(p12);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "default", "legacy", "modern", "fast" })
+	void escritorAbreConElJdk(String profile) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		X509Certificate cert = fiel.getCertificate();
+		Pkcs12Writer.write(List.of(new Pkcs12Writer.Entry("AAA010101AAA", fiel.getPrivateKey(), new Certificate[] { cert })),
+				STORE_PASSWORD, ProtectionProfile.parse(profile, 0), out);
+
+		assertOpens(out.toByteArray());
+	}
+}
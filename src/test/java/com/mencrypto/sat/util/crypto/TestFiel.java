@@ -0,0 +1,111 @@
+package com.mencrypto.sat.util.crypto;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.X500NameBuilder;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.openssl.PKCS8Generator;
+import org.bouncycastle.openssl.jcajce.JcaPKCS8Generator;
+import org.bouncycastle.openssl.jcajce.JceOpenSSLPKCS8EncryptorBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+/**
+ * FIEL autofirmada con la vigencia que pida cada prueba, con el RFC en el atributo 2.5.4.45
+ * y la llave cifrada como PKCS#8 igual que las del SAT
+ *
+ * @author Mencryto
+ * @version 1.0
+ */
+final class TestFiel {
+
+	static final long DAY = 86_400_000L;
+	static final char[] PASSWORD = "12345678a".toCharArray();
+
+	private static final AtomicLong SERIAL = new AtomicLong(System.currentTimeMillis());
+
+	private final PrivateKey privateKey;
+	private final X509Certificate certificate;
+	private final byte[] key;
+
+	private TestFiel(PrivateKey privateKey, X509Certificate certificate, byte[] key) {
+		this.privateKey = privateKey;
+		this.certificate = certificate;
+		this.key = key;
+	}
+
+	/**
+	 * @param rfc RFC del certificado
+	 * @param notBefore inicio de la vigencia en milisegundos
+	 * @param notAfter fin de la vigencia en milisegundos
+	 * @return TestFiel con llave RSA de 1024 bits para que las pruebas sean rápidas
+	 */
+	static TestFiel generate(String rfc, long notBefore, long notAfter) throws GeneralSecurityException, IOException {
+		try {
+			KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+			generator.initialize(1024);
+			KeyPair keyPair = generator.generateKeyPair();
+			X500Name subject = new X500NameBuilder(BCStyle.INSTANCE)
+					.addRDN(BCStyle.CN, "CONTRIBUYENTE DE PRUEBA")
+					.addRDN(BCStyle.UNIQUE_IDENTIFIER, rfc + " / XEXX010101HNEXXXA4")
+					.build();
+			X509Certificate certificate = new JcaX509CertificateConverter().getCertificate(
+					new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(SERIAL.incrementAndGet()),
+							new Date(notBefore), new Date(notAfter), subject, keyPair.getPublic())
+							.build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+			byte[] key = new JcaPKCS8Generator(keyPair.getPrivate(), new JceOpenSSLPKCS8EncryptorBuilder(PKCS8Generator.DES3_CBC)
+					.setProvider(FielConverter.BC_PROVIDER)
+					.setIterationCount(1)
+					.setPassword(PASSWORD)
+					.build()).generate().getContent();
+			return new TestFiel(keyPair.getPrivate(), certificate, key);
+		} catch (org.bouncycastle.operator.OperatorCreationException e) {
+			throw new GeneralSecurityException(e);
+		}
+	}
+
+	/**
+	 * @return TestFiel vigente desde ayer y por un año
+	 */
+	static TestFiel current(String rfc) throws GeneralSecurityException, IOException {
+		long now = System.currentTimeMillis();
+		return generate(rfc, now - DAY, now + 365 * DAY);
+	}
+
+	/**
+	 * Escribe el .key y el .cer con el nombre base indicado
+	 * @return Path del certificado
+	 */
+	Path writeTo(Path dir, String baseName) throws IOException, GeneralSecurityException {
+		Files.createDirectories(dir);
+		Files.write(dir.resolve(baseName + ".key"), key);
+		return Files.write(dir.resolve(baseName + ".cer"), certificate.getEncoded());
+	}
+
+	/**
+	 * @return byte[] llave PKCS#8 cifrada con {@link #PASSWORD}
+	 */
+	byte[] getKey() {
+		return key.clone();
+	}
+
+	PrivateKey getPrivateKey() {
+		return privateKey;
+	}
+
+	X509Certificate getCertificate() {
+		return certificate;
+	}
+}